@@ -0,0 +1,258 @@
+package br.com.staroski.text;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks of the public operations shared by {@link CharacterBuffer}, {@link StringBuilder} and {@link StringBuffer}.<br>
+ * The subclasses determine the {@link Target} measured: {@link CharacterBufferBenchmark} for each memory page size, and {@link StringBuilderBenchmark} for the baselines.<br>
+ * Usage: {@code java -jar benchmarks.jar [JMH options]}, the {@link GCProfiler gc profiler} is always enabled, so the allocation per operation is reported too.
+ *
+ * @author Ricardo Artur Staroski
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class AbstractBenchmark {
+
+    /**
+     * The operations that differ between {@link CharacterBuffer}, {@link StringBuilder} and {@link StringBuffer}, the common ones go through {@link #sequence()}.
+     */
+    static abstract class Target {
+
+        abstract void append(char value);
+
+        abstract void append(CharSequence text);
+
+        abstract void append(int value);
+
+        abstract boolean contentEquals(Target that);
+
+        abstract int contentHash();
+
+        abstract void delete(int start, int end);
+
+        abstract int indexOf(String text, int fromIndex);
+
+        abstract void insert(int index, String text);
+
+        abstract int lastIndexOf(String text, int fromIndex);
+
+        abstract Target newInstance();
+
+        /**
+         * Renders the {@link #TEMPLATE} with a compiled {@link CharacterBuffer.Template}, the {@link StringBuffer} renders it with {@link String#format(String, Object...)}
+         * and the {@link StringBuilder} with hand written appends, that are the baselines of the template rendering.
+         */
+        abstract void render(String name, int amount);
+
+        abstract CharSequence sequence();
+
+        abstract Serializable serializable();
+
+        abstract CharSequence subSequence(int start, int end);
+    }
+
+    static final String WORD = "abcdefghijklmnopqrstuvwxyz0123456789";
+    static final String NEEDLE = "<needle>";
+    static final int NEEDLE_INDEX = 16;
+
+    static final CharacterBuffer.Template TEMPLATE = CharacterBuffer.Template.compile("Hello ${name}, you owe ${amount}");
+    static final String FORMAT = "Hello %s, you owe %d";
+    static final int RENDERS = 1000;
+
+    /**
+     * Runs the benchmarks selected by the JMH command line options with the {@link GCProfiler gc profiler}.
+     *
+     * @param args
+     *            the JMH command line options.
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions command = new CommandLineOptions(args);
+        if (command.shouldHelp() || command.shouldList() || command.shouldListWithParams() || command.shouldListProfilers() || command.shouldListResultFormats()) {
+            Main.main(args); // nothing to run, just to be printed
+            return;
+        }
+        Options options = new OptionsBuilder().parent(command).addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+
+    @Param({ "10000", "1000000" })
+    public int dataSize;
+
+    private final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+    private final int[] randomIndexes = new int[1024];
+    private Target target;
+    private Target copy;
+
+    @Benchmark
+    public int appendChar() {
+        Target fresh = target.newInstance();
+        for (int i = 0; i < dataSize; i++) {
+            fresh.append((char) ('a' + (i % 26)));
+        }
+        return fresh.sequence().length();
+    }
+
+    @Benchmark
+    public int appendCharSequence() {
+        Target fresh = target.newInstance();
+        while (fresh.sequence().length() < dataSize) {
+            fresh.append(WORD);
+        }
+        return fresh.sequence().length();
+    }
+
+    @Benchmark
+    public int appendInt() {
+        Target fresh = target.newInstance();
+        for (int i = 0; fresh.sequence().length() < dataSize; i++) {
+            fresh.append(i);
+        }
+        return fresh.sequence().length();
+    }
+
+    @Benchmark
+    public void charAtRandom(Blackhole blackhole) {
+        CharSequence sequence = target.sequence();
+        for (int index : randomIndexes) {
+            blackhole.consume(sequence.charAt(index));
+        }
+    }
+
+    @Benchmark
+    public long charAtSequential() {
+        CharSequence sequence = target.sequence();
+        long sum = 0;
+        for (int i = 0, n = sequence.length(); i < n; i++) {
+            sum += sequence.charAt(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public boolean contentEquals() {
+        return target.contentEquals(copy);
+    }
+
+    @Benchmark
+    public int contentHash() {
+        return target.contentHash();
+    }
+
+    @Benchmark
+    public int indexOf() {
+        return target.indexOf(NEEDLE, NEEDLE_INDEX + 1);
+    }
+
+    @Benchmark
+    public int insertDeleteHead() {
+        return insertDelete(0);
+    }
+
+    @Benchmark
+    public int insertDeleteMiddle() {
+        return insertDelete(target.sequence().length() / 2);
+    }
+
+    @Benchmark
+    public int insertDeleteTail() {
+        return insertDelete(target.sequence().length());
+    }
+
+    @Benchmark
+    public int lastIndexOf() {
+        return target.lastIndexOf(NEEDLE, target.sequence().length() - NEEDLE.length() - 1);
+    }
+
+    @Benchmark
+    public int render() {
+        Target fresh = target.newInstance();
+        for (int i = 0; i < RENDERS; i++) {
+            fresh.render(WORD, i);
+        }
+        return fresh.sequence().length();
+    }
+
+    @Benchmark
+    public int serialization() throws IOException {
+        serialized.reset();
+        ObjectOutputStream out = new ObjectOutputStream(serialized);
+        out.writeObject(target.serializable());
+        out.close();
+        return serialized.size();
+    }
+
+    /**
+     * Fills the {@link Target}s with {@code dataSize} characters, with a needle after the first characters and another one at the end, for the searches.
+     */
+    @Setup
+    public void setup() {
+        target = fill(newTarget());
+        copy = fill(newTarget());
+        Random random = new Random(dataSize);
+        for (int i = 0; i < randomIndexes.length; i++) {
+            randomIndexes[i] = random.nextInt(target.sequence().length());
+        }
+    }
+
+    @Benchmark
+    public int subSequence() {
+        int length = target.sequence().length();
+        return target.subSequence(length / 4, length - length / 4).length();
+    }
+
+    @Benchmark
+    public int toStringLength() {
+        return target.sequence().toString().length();
+    }
+
+    /**
+     * @return a new empty {@link Target} to be measured.
+     */
+    abstract Target newTarget();
+
+    private final Target fill(Target target) {
+        for (int i = 0; i < NEEDLE_INDEX; i++) {
+            target.append('-');
+        }
+        target.append(NEEDLE);
+        while (target.sequence().length() < dataSize - NEEDLE.length()) {
+            target.append(WORD);
+        }
+        target.append(NEEDLE);
+        return target;
+    }
+
+    private final int insertDelete(int index) {
+        target.insert(index, WORD);
+        target.delete(index, index + WORD.length());
+        return target.sequence().length();
+    }
+}
@@ -0,0 +1,102 @@
+package br.com.staroski.text;
+
+import java.io.Serializable;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * JMH benchmarks of {@link CharacterBuffer} for each memory page size.
+ *
+ * @author Ricardo Artur Staroski
+ */
+public class CharacterBufferBenchmark extends AbstractBenchmark {
+
+    private static final class CharacterBufferTarget extends Target {
+
+        private final int pageSize;
+        private final CharacterBuffer buffer;
+
+        CharacterBufferTarget(int pageSize) {
+            this.pageSize = pageSize;
+            this.buffer = CharacterBuffer.with(pageSize).chars();
+        }
+
+        @Override
+        void append(char value) {
+            buffer.append(value);
+        }
+
+        @Override
+        void append(CharSequence text) {
+            buffer.append(text);
+        }
+
+        @Override
+        void append(int value) {
+            buffer.append(value);
+        }
+
+        @Override
+        boolean contentEquals(Target that) {
+            return buffer.equals(((CharacterBufferTarget) that).buffer);
+        }
+
+        @Override
+        int contentHash() {
+            return buffer.hashCode();
+        }
+
+        @Override
+        void delete(int start, int end) {
+            buffer.delete(start, end);
+        }
+
+        @Override
+        int indexOf(String text, int fromIndex) {
+            return buffer.indexOf(text, fromIndex);
+        }
+
+        @Override
+        void insert(int index, String text) {
+            buffer.insert(index, text);
+        }
+
+        @Override
+        int lastIndexOf(String text, int fromIndex) {
+            return buffer.lastIndexOf(text, fromIndex);
+        }
+
+        @Override
+        Target newInstance() {
+            return new CharacterBufferTarget(pageSize);
+        }
+
+        @Override
+        void render(String name, int amount) {
+            buffer.render(TEMPLATE, name, amount);
+        }
+
+        @Override
+        CharSequence sequence() {
+            return buffer;
+        }
+
+        @Override
+        Serializable serializable() {
+            return buffer;
+        }
+
+        @Override
+        CharSequence subSequence(int start, int end) {
+            return buffer.subSequence(start, end);
+        }
+    }
+
+    @Param({ "1024", "16384", "65536" })
+    public int pageSize;
+
+    @Override
+    Target newTarget() {
+        return new CharacterBufferTarget(pageSize);
+    }
+}
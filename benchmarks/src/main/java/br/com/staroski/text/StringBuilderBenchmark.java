@@ -0,0 +1,171 @@
+package br.com.staroski.text;
+
+import java.io.Serializable;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * JMH benchmarks of the {@link StringBuilder} and {@link StringBuffer} baselines of {@link CharacterBufferBenchmark}.
+ *
+ * @author Ricardo Artur Staroski
+ */
+public class StringBuilderBenchmark extends AbstractBenchmark {
+
+    private static final class StringBufferTarget extends Target {
+
+        private final StringBuffer buffer = new StringBuffer();
+
+        @Override
+        void append(char value) {
+            buffer.append(value);
+        }
+
+        @Override
+        void append(CharSequence text) {
+            buffer.append(text);
+        }
+
+        @Override
+        void append(int value) {
+            buffer.append(value);
+        }
+
+        @Override
+        boolean contentEquals(Target that) {
+            return buffer.toString().contentEquals(that.sequence());
+        }
+
+        @Override
+        int contentHash() {
+            return buffer.toString().hashCode();
+        }
+
+        @Override
+        void delete(int start, int end) {
+            buffer.delete(start, end);
+        }
+
+        @Override
+        int indexOf(String text, int fromIndex) {
+            return buffer.indexOf(text, fromIndex);
+        }
+
+        @Override
+        void insert(int index, String text) {
+            buffer.insert(index, text);
+        }
+
+        @Override
+        int lastIndexOf(String text, int fromIndex) {
+            return buffer.lastIndexOf(text, fromIndex);
+        }
+
+        @Override
+        Target newInstance() {
+            return new StringBufferTarget();
+        }
+
+        @Override
+        void render(String name, int amount) {
+            buffer.append(String.format(FORMAT, name, amount));
+        }
+
+        @Override
+        CharSequence sequence() {
+            return buffer;
+        }
+
+        @Override
+        Serializable serializable() {
+            return buffer;
+        }
+
+        @Override
+        CharSequence subSequence(int start, int end) {
+            return buffer.subSequence(start, end);
+        }
+    }
+
+    private static final class StringBuilderTarget extends Target {
+
+        private final StringBuilder builder = new StringBuilder();
+
+        @Override
+        void append(char value) {
+            builder.append(value);
+        }
+
+        @Override
+        void append(CharSequence text) {
+            builder.append(text);
+        }
+
+        @Override
+        void append(int value) {
+            builder.append(value);
+        }
+
+        @Override
+        boolean contentEquals(Target that) {
+            return builder.toString().contentEquals(that.sequence());
+        }
+
+        @Override
+        int contentHash() {
+            return builder.toString().hashCode();
+        }
+
+        @Override
+        void delete(int start, int end) {
+            builder.delete(start, end);
+        }
+
+        @Override
+        int indexOf(String text, int fromIndex) {
+            return builder.indexOf(text, fromIndex);
+        }
+
+        @Override
+        void insert(int index, String text) {
+            builder.insert(index, text);
+        }
+
+        @Override
+        int lastIndexOf(String text, int fromIndex) {
+            return builder.lastIndexOf(text, fromIndex);
+        }
+
+        @Override
+        Target newInstance() {
+            return new StringBuilderTarget();
+        }
+
+        @Override
+        void render(String name, int amount) {
+            builder.append("Hello ").append(name).append(", you owe ").append(amount);
+        }
+
+        @Override
+        CharSequence sequence() {
+            return builder;
+        }
+
+        @Override
+        Serializable serializable() {
+            return builder;
+        }
+
+        @Override
+        CharSequence subSequence(int start, int end) {
+            return builder.subSequence(start, end);
+        }
+    }
+
+    @Param({ "StringBuilder", "StringBuffer" })
+    public String implementation;
+
+    @Override
+    Target newTarget() {
+        return "StringBuffer".equals(implementation) ? new StringBufferTarget() : new StringBuilderTarget();
+    }
+}
@@ -1,13 +1,62 @@
 package br.com.staroski.text;
 
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingFormatArgumentException;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UnknownFormatConversionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * This class is an alternative to Java's {@link StringBuilder} and {@link StringBuffer} classes.<br>
@@ -31,12 +80,13 @@ import java.util.Arrays;
  * With this strategy the {@link CharacterBuffer} prevents {@code OutOfMemoryError}s when dealing with huge {@link String} concatenations.<br>
  * 
  * <p>
- * <b>Hint:</b> This class is not designed to be extended.
+ * <b>Hint:</b> This class is not designed to be extended.<br>
+ * The options of the {@link Amount builder} are serialized along with the characters, except the {@link Amount#stats(CharacterBufferStats) runtime counters}.
  * </p>
  * 
  * @author Ricardo Artur Staroski
  */
-public final class CharacterBuffer implements Appendable, CharSequence, Comparable<CharSequence>, Serializable {
+public final class CharacterBuffer implements Appendable, CharSequence, Closeable, Comparable<CharSequence>, Serializable {
 
     /**
      * Builder used to determine the {@link CharacterBuffer}'s memory page sizes.<br>
@@ -46,12 +96,28 @@ public final class CharacterBuffer implements Appendable, CharSequence, Comparab
      * <b>Multipliers:</b><br>
      * - {@link #kilo()}: returns this amount multiplied by 2<sup>10</sup>.<br>
      * - {@link #mega()}: returns this amount multiplied by 2<sup>20</sup>.<br>
-     * - {@link #giga()}: returns this amount multiplied by 2<sup>30</sup>.
+     * - {@link #giga()}: returns this amount multiplied by 2<sup>30</sup>.<br>
+     * <b>Options:</b><br>
+     * - {@link #adaptive(int)}: starts with a small first memory page that doubles until it reaches the page size.<br>
+     * - {@link #compress(int)}: compresses the memory pages that were not accessed recently.<br>
+     * - {@link #deduplicate()}: shares the full memory pages that are identical to the ones of other buffers.<br>
+     * - {@link #maxHeap(int)}: spills the memory pages that were not accessed recently to disk when the heap budget is exceeded.<br>
+     * - {@link #persistent()}: builds a {@link PersistentCharacterBuffer}, that keeps its versions for undo and redo, instead of a {@link CharacterBuffer}.<br>
+     * - {@link #stats(CharacterBufferStats)}: records the runtime counters of the {@link CharacterBuffer}.<br>
+     * - {@link #toStringCache(CachePolicy)}: determines how the {@link String} returned by {@link CharacterBuffer#toString()} is cached.
      */
     public static final class Amount {
 
         private final int amount;
 
+        private int firstPageSize;
+        private int hotPages;
+        private boolean deduplicate;
+        private long maxHeap;
+        private CachePolicy cachePolicy = CachePolicy.SOFT;
+        private int cacheLimit = Integer.MAX_VALUE;
+        private CharacterBufferStats stats;
+
         /**
          * Private constructor, se {@link CharacterBuffer#with(int)} method
          */
@@ -62,769 +128,3904 @@ public final class CharacterBuffer implements Appendable, CharSequence, Comparab
             this.amount = amount;
         }
 
+        /**
+         * Starts the {@link CharacterBuffer} with a first memory page of the specified size, that doubles whenever it is full until it reaches the page size.<br>
+         * The following memory pages are allocated with the page size, so the index arithmetic does not change.<br>
+         * <b>Hint:</b> This option suits many short lived buffers that usually hold short texts, like messages.
+         * 
+         * @param firstPageSize
+         *            the initial size, in {@code char}s, of the first memory page.
+         * 
+         * @return this {@link Amount amount} with the adaptive first memory page enabled.
+         */
+        public final Amount adaptive(int firstPageSize) {
+            if (firstPageSize < 1) {
+                throw new IllegalArgumentException("firstPageSize must be greater than zero");
+            }
+            Amount amount = copy(this.amount);
+            amount.firstPageSize = firstPageSize;
+            return amount;
+        }
+
         /**
          * @return an {@link CharacterBuffer} with memory page sizes that that have this {@link Amount amount} of bytes.
          */
         public final CharacterBuffer bytes() {
-            return new CharacterBuffer(amount >> 1);
+            if (amount < 2) {
+                throw new IllegalArgumentException("amount of bytes must hold at least one char");
+            }
+            return new CharacterBuffer(amount >> 1, this);
         }
 
         /**
          * @return an {@link CharacterBuffer} with memory page sizes that have this {@link Amount amount} of chars.
          */
         public final CharacterBuffer chars() {
-            return new CharacterBuffer(amount);
+            return new CharacterBuffer(amount, this);
+        }
+
+        /**
+         * Enables the compression of the memory pages behind the write position that were not accessed recently.<br>
+         * A compressed memory page is transparently decompressed when it is accessed again, and only the specified amount of decompressed pages is kept,
+         * the least recently decompressed pages are compressed back first.<br>
+         * <b>Hint:</b> This option trades read latency for memory, it suits text that is written once and read rarely, like logs.
+         * 
+         * @param hotPages
+         *            the amount of uncompressed memory pages kept behind the write position.
+         * 
+         * @return this {@link Amount amount} with the compression of memory pages enabled.
+         */
+        public final Amount compress(int hotPages) {
+            if (hotPages < 1) {
+                throw new IllegalArgumentException("hotPages must be greater than zero");
+            }
+            Amount amount = copy(this.amount);
+            amount.hotPages = hotPages;
+            return amount;
+        }
+
+        /**
+         * Enables the deduplication of the full memory pages across all the {@link CharacterBuffer}s that enable it.<br>
+         * When a memory page gets full, it is looked up by content in a table shared by those buffers, and it is replaced by the identical page found there,
+         * otherwise it is added to the table, that references the pages weakly, so they are dropped when no buffer holds them anymore.
+         * A shared memory page is copied before it changes, so the buffers never see the changes of each other.<br>
+         * <b>Hint:</b> This option suits many buffers holding highly repetitive text, like templated messages and logs,
+         * the {@link #stats(CharacterBufferStats) runtime counters} show its hit rate and the bytes saved.
+         * 
+         * @return this {@link Amount amount} with the deduplication of memory pages enabled.
+         */
+        public final Amount deduplicate() {
+            Amount amount = copy(this.amount);
+            amount.deduplicate = true;
+            return amount;
         }
 
         /**
          * @return this {@link Amount amount} multiplied by 2<sup>30</sup>.
          */
         public final Amount giga() {
-            return new Amount(amount * 1073741824);
+            return copy(amount * 1073741824);
         }
 
         /**
          * @return this {@link Amount amount} multiplied by 2<sup>10</sup>.
          */
         public final Amount kilo() {
-            return new Amount(amount * 1024);
+            return copy(amount * 1024);
+        }
+
+        /**
+         * Limits the amount of heap used by the memory pages of the {@link CharacterBuffer}.<br>
+         * When the budget is exceeded, the least recently used memory pages behind the write position are spilled to a temporary file,
+         * and they are transparently read back when accessed again, so the buffer keeps growing instead of throwing an {@code OutOfMemoryError}.<br>
+         * If the {@link #compress(int) compression} is enabled too, the memory pages are compressed before being written to disk.<br>
+         * <b>Hint:</b> The temporary file is deleted, along with the whole content, when the {@link CharacterBuffer} is {@link CharacterBuffer#close() closed}, or when all of its spilled pages are removed,
+         * so a buffer with a heap budget should be closed when it is no longer used.<br>
+         * <b>Example:</b> {@code CharacterBuffer.with(16).kilo().maxHeap(256).mega().bytes()}
+         * 
+         * @param budget
+         *            the heap budget, the unit is determined by the returned {@link HeapBudget}.
+         * 
+         * @return a {@link HeapBudget} object to determine the unit of the heap budget.
+         */
+        public final HeapBudget maxHeap(int budget) {
+            return new HeapBudget(this, budget);
         }
 
         /**
          * @return this {@link Amount amount} multiplied by 2<sup>20</sup>.
          */
         public final Amount mega() {
-            return new Amount(amount * 1048576);
+            return copy(amount * 1048576);
         }
-    }
 
-    private static final long serialVersionUID = 1;
+        /**
+         * Builds a {@link PersistentCharacterBuffer} instead of a {@link CharacterBuffer}, whose {@link PersistentCharacterBuffer#snapshot() snapshots} are {@code O(1)}
+         * and whose edits create only the memory pages they touch, so that many versions of a big document share almost all of their memory.<br>
+         * <b>Hint:</b> The other options do not apply to a {@link PersistentCharacterBuffer}, only the page size does.<br>
+         * <b>Example:</b> {@code CharacterBuffer.with(16).kilo().persistent().bytes()}
+         * 
+         * @return a {@link Persistent} object to build the {@link PersistentCharacterBuffer}.
+         */
+        public final Persistent persistent() {
+            return new Persistent(amount);
+        }
 
-    /**
-     * Prepares the {@link Amount amount} of memory that each memory page will allocate.
-     * 
-     * @param amount
-     *            The amount of memory that will be allocated for each new memory page.
-     * 
-     * @return An {@link Amount} object to build the instance of {@link CharacterBuffer}.
-     */
-    public static final Amount with(int amount) {
-        return new Amount(amount);
-    }
+        /**
+         * Records the runtime counters of the {@link CharacterBuffer} in the specified {@link CharacterBufferStats}, that may be shared by many buffers.<br>
+         * The counters are off by default, a {@link CharacterBuffer} without {@link CharacterBufferStats} does not record anything.
+         * 
+         * @param stats
+         *            the {@link CharacterBufferStats} that receives the counters.
+         * 
+         * @return this {@link Amount amount} with the runtime counters enabled.
+         */
+        public final Amount stats(CharacterBufferStats stats) {
+            if (stats == null) {
+                throw new IllegalArgumentException("stats must not be null");
+            }
+            Amount amount = copy(this.amount);
+            amount.stats = stats;
+            return amount;
+        }
 
-    private int pageSize;
+        /**
+         * Determines how the {@link String} returned by {@link CharacterBuffer#toString()} is cached until the next change, the default is {@link CachePolicy#SOFT}.
+         * 
+         * @param policy
+         *            the {@link CachePolicy}.
+         * 
+         * @return this {@link Amount amount} with the specified {@link CachePolicy}.
+         */
+        public final Amount toStringCache(CachePolicy policy) {
+            return toStringCache(policy, Integer.MAX_VALUE);
+        }
 
-    private char[][] memory;
-    private int size;
-    private int page;
-    private int offset;
+        /**
+         * Determines how the {@link String} returned by {@link CharacterBuffer#toString()} is cached until the next change, the default is {@link CachePolicy#SOFT}.<br>
+         * Content longer than the specified limit is never cached, this bounds the memory held by the cache.
+         * 
+         * @param policy
+         *            the {@link CachePolicy}.
+         * 
+         * @param maxLength
+         *            the maximum length, in {@code char}s, of a cached content.
+         * 
+         * @return this {@link Amount amount} with the specified {@link CachePolicy}.
+         */
+        public final Amount toStringCache(CachePolicy policy, int maxLength) {
+            if (policy == null) {
+                throw new IllegalArgumentException("policy must not be null");
+            }
+            if (maxLength < 0) {
+                throw new IllegalArgumentException("maxLength must not be negative");
+            }
+            Amount amount = copy(this.amount);
+            amount.cachePolicy = policy;
+            amount.cacheLimit = maxLength;
+            return amount;
+        }
 
-    private transient SoftReference<String> toStringCache;
+        /**
+         * @return a new {@link Amount} with the specified amount and the same options of this one.
+         */
+        private final Amount copy(int amount) {
+            Amount copy = new Amount(amount);
+            copy.firstPageSize = firstPageSize;
+            copy.hotPages = hotPages;
+            copy.deduplicate = deduplicate;
+            copy.maxHeap = maxHeap;
+            copy.cachePolicy = cachePolicy;
+            copy.cacheLimit = cacheLimit;
+            copy.stats = stats;
+            return copy;
+        }
+    }
 
     /**
-     * Private constructor, see {@link CharacterBuffer#with(int)} method.
+     * Policies of the cache of the {@link String} returned by {@link CharacterBuffer#toString()}, see {@link Amount#toStringCache(CachePolicy)}.<br>
+     * After appending, only the new characters are copied next to the cached ones, and once a buffer is seen growing between calls,
+     * the cache also keeps a copy of the characters with room to grow, so that the next calls do not copy the prefix again.
      */
-    private CharacterBuffer(int pageSize) {
-        this.pageSize = pageSize;
-        allocate();
+    public static enum CachePolicy {
+
+        /**
+         * Nothing is cached, every call to {@link CharacterBuffer#toString()} copies the whole content.
+         */
+        NONE,
+
+        /**
+         * The cache is held through a {@link SoftReference}, so the garbage collector may clear it under memory pressure.
+         */
+        SOFT,
+
+        /**
+         * The cache is held through a strong reference until the next change, it is never cleared by the garbage collector.
+         */
+        STRONG
     }
 
     /**
-     * Appends the {@link String} representation of the {@code boolean} argument to this {@link CharacterBuffer}.
-     * 
-     * @param value
-     *            the {@code boolean} to append.
-     * 
-     * @return a reference to this object.
+     * Condition on a single {@code char}, see {@link CharacterBuffer#tokenize(CharPredicate)}.
      */
-    public final CharacterBuffer append(boolean value) {
-        return append(String.valueOf(value));
+    public static interface CharPredicate {
+
+        /**
+         * Evaluates this condition on the {@code char} argument.
+         * 
+         * @param value
+         *            the {@code char} to evaluate.
+         * 
+         * @return {@code true} if the {@code char} matches this condition.
+         */
+        boolean test(char value);
     }
 
     /**
-     * Appends the {@link String} representation of the {@code char} argument to this {@link CharacterBuffer}.
-     * 
-     * @param value
-     *            the {@code char} to append.
-     * 
-     * @return a reference to this object.
+     * Page aware {@link Spliterator} of the {@code char}s of this {@link CharacterBuffer}, it splits on memory page boundaries.
      */
-    @Override
-    public final CharacterBuffer append(char value) {
-        toStringCache = null;
-        memory[page][offset] = value;
-        if ((offset = (offset + pageSize + 1) % pageSize) == 0) {
-            allocateNext();
+    private final class CharSpliterator implements Spliterator.OfInt {
+
+        private int index;
+        private final int end;
+
+        private CharSpliterator(int start, int end) {
+            this.index = start;
+            this.end = end;
         }
-        ++size;
-        return this;
-    }
 
-    /**
-     * Appends the {@link String} representation of the {@code char} array argument to this {@link CharacterBuffer}.
-     * 
-     * @param characters
-     *            the {@code char} array to append.
-     * 
-     * @return a reference to this object.
-     */
-    public final CharacterBuffer append(char[] characters) {
-        return append(String.valueOf(characters));
-    }
+        @Override
+        public final int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
 
-    /**
-     * Appends the {@link String} representation of a subarray of the {@code char} array argument to this {@link CharacterBuffer}.
-     * 
-     * @param characters
-     *            the {@code char} array to append.
-     * 
-     * @param offset
-     *            the index of the first {@code char} to append.
-     * 
-     * @param length
-     *            the number of {@code char}s to append.
-     * 
-     * @return a reference to this object.
-     */
-    public final CharacterBuffer append(char[] characters, int offset, int length) {
-        return append(String.valueOf(characters, offset, length));
-    }
+        @Override
+        public final long estimateSize() {
+            return end - index;
+        }
 
-    /**
-     * Appends the specified {@code CharSequence} to this {@link CharacterBuffer}.
-     * 
-     * @param text
-     *            the {@code CharSequence} to append.
-     * 
-     * @return a reference to this object.
-     */
-    @Override
-    public final CharacterBuffer append(CharSequence text) {
-        if (text == null) {
-            text = "null";
+        @Override
+        public final void forEachRemaining(IntConsumer action) {
+            int i = index;
+            index = end;
+            while (i < end) {
+                char[] chars = page(i / pageSize);
+                int from = i % pageSize;
+                int to = Math.min(pageSize, from + end - i);
+                for (int k = from; k < to; k++) {
+                    action.accept(chars[k]);
+                }
+                i += to - from;
+            }
         }
-        int remaining = text.length();
-        if (remaining < 1) {
-            return this;
+
+        @Override
+        public final boolean tryAdvance(IntConsumer action) {
+            if (index < end) {
+                action.accept(charAt(index++));
+                return true;
+            }
+            return false;
         }
-        toStringCache = null;
-        char[] chars = text.toString().toCharArray();
-        int index = 0;
-        int availableOnPage = pageSize - offset;
-        while (remaining > 0) {
-            int length = Math.min(availableOnPage, remaining);
-            System.arraycopy(chars, index, memory[page], offset, length);
-            if ((offset = (offset + pageSize + length) % pageSize) == 0) {
-                allocateNext();
+
+        @Override
+        public final Spliterator.OfInt trySplit() {
+            int middle = splitPoint(index, end);
+            if (middle <= index) {
+                return null;
             }
-            availableOnPage = pageSize - offset;
-            remaining -= length;
-            index += length;
-            size += length;
+            CharSpliterator prefix = new CharSpliterator(index, middle);
+            index = middle;
+            return prefix;
         }
-        return this;
     }
 
     /**
-     * Appends a subsequence of the specified {@code CharSequence} to this {@link CharacterBuffer}.
-     * 
-     * @param text
-     *            the {@code CharSequence} to append.
-     * 
-     * @param start
-     *            the starting index of the subsequence to append.
-     * 
-     * @param end
-     *            the end index of the subsequence to append.
-     * 
-     * @return a reference to this object.
+     * Operation on a single {@code char}, see {@link CharacterBuffer#transform(CharUnaryOperator)}.
      */
-    @Override
-    public final CharacterBuffer append(CharSequence text, int start, int end) {
-        return append(text.subSequence(start, end));
-    }
+    public static interface CharUnaryOperator {
 
-    /**
-     * Appends the {@link String} representation of the {@code double} argument to this {@link CharacterBuffer}.
-     * 
-     * @param value
-     *            the {@code double} to append.
-     * 
-     * @return a reference to this object.
-     */
-    public final CharacterBuffer append(double value) {
-        return append(String.valueOf(value));
+        /**
+         * Applies this operation to the {@code char} argument.<br>
+         * <b>Hint:</b> Large buffers are transformed in parallel, so this operation must not depend on the order of the characters nor keep any state.
+         * 
+         * @param value
+         *            the {@code char} to transform.
+         * 
+         * @return the transformed {@code char}.
+         */
+        char apply(char value);
     }
 
     /**
-     * Appends the {@link String} representation of the {@code float} argument to this {@link CharacterBuffer}.
-     * 
-     * @param value
-     *            the {@code float} to append.
-     * 
-     * @return a reference to this object.
+     * Visitor of the runs of characters of a {@link CharacterBuffer}, see {@link CharacterBuffer#forEachChunk(int, int, ChunkConsumer)}.<br>
+     * Each run is a slice of a memory page, so consumers can process the characters with tight array loops instead of calling {@link CharacterBuffer#charAt(int)}.
      */
-    public final CharacterBuffer append(float value) {
-        return append(String.valueOf(value));
-    }
+    public static interface ChunkConsumer {
 
-    /**
-     * Appends the {@link String} representation of the {@code int} argument to this {@link CharacterBuffer}.
-     * 
-     * @param value
-     *            the {@code int} to append.
-     * 
-     * @return a reference to this object.
-     */
-    public final CharacterBuffer append(int value) {
-        return append(String.valueOf(value));
+        /**
+         * Consumes a run of characters.<br>
+         * <b>Hint:</b> The {@code char} array is the memory page itself, it must not be modified nor kept after this method returns.
+         * 
+         * @param chars
+         *            the memory page that holds the run.
+         * 
+         * @param offset
+         *            the index of the first {@code char} of the run.
+         * 
+         * @param length
+         *            the number of {@code char}s of the run.
+         */
+        void accept(char[] chars, int offset, int length);
     }
 
     /**
-     * Appends the {@link String} representation of the {@code long} argument to this {@link CharacterBuffer}.
-     * 
-     * @param value
-     *            the {@code long} to append.
-     * 
-     * @return a reference to this object.
+     * Page aware {@link Spliterator} of the code points of this {@link CharacterBuffer}, it splits on memory page boundaries and never splits a surrogate pair.
      */
-    public final CharacterBuffer append(long value) {
-        return append(String.valueOf(value));
-    }
+    private final class CodePointSpliterator implements Spliterator.OfInt {
 
-    /**
-     * Appends the {@link String} representation of the {@link Object} argument to this {@link CharacterBuffer}.
-     * 
-     * @param value
-     *            the {@link Object} to append.
-     * 
-     * @return a reference to this object.
-     */
-    public final CharacterBuffer append(Object object) {
-        return append(String.valueOf(object));
-    }
+        private int index;
+        private final int end;
 
-    /**
-     * Returns the {@code char} value in this {@link CharacterBuffer} at the specified index.
-     * 
-     * @param index
-     *            the index of the desired {@code char} value.
-     * 
-     * @return the {@code char} value at the specified index.
-     */
-    @Override
-    public final char charAt(int index) {
-        return memory[index / pageSize][index % pageSize];
-    }
+        private CodePointSpliterator(int start, int end) {
+            this.index = start;
+            this.end = end;
+        }
 
-    /**
-     * Compares this {@link CharacterBuffer} with the {@link CharSequence} argument.
-     * 
-     * @return {@code 0} if {@code this} is equals to the {@link CharSequence} argument.<br>
-     *         A positive number if {@code this} is greater than the {@link CharSequence} argument.<br>
-     *         A negative number if {@code this} is less than the {@link CharSequence} argument.
-     */
-    @Override
-    public final int compareTo(CharSequence that) {
-        int diff = this.length() - that.length();
-        if (diff != 0) {
-            return diff;
+        @Override
+        public final int characteristics() {
+            return ORDERED | NONNULL;
+        }
+
+        @Override
+        public final long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public final void forEachRemaining(IntConsumer action) {
+            int i = index;
+            index = end;
+            while (i < end) {
+                char[] chars = page(i / pageSize);
+                int pageStart = i - i % pageSize;
+                int limit = Math.min(end, pageStart + pageSize);
+                while (i < limit) {
+                    char high = chars[i++ - pageStart];
+                    if (Character.isHighSurrogate(high) && i < end) {
+                        // the low surrogate may be on the next memory page
+                        char low = i < limit ? chars[i - pageStart] : charAt(i);
+                        if (Character.isLowSurrogate(low)) {
+                            action.accept(Character.toCodePoint(high, low));
+                            i++;
+                            continue;
+                        }
+                    }
+                    action.accept(high);
+                }
+            }
+        }
+
+        @Override
+        public final boolean tryAdvance(IntConsumer action) {
+            if (index >= end) {
+                return false;
+            }
+            char high = charAt(index++);
+            if (Character.isHighSurrogate(high) && index < end) {
+                char low = charAt(index);
+                if (Character.isLowSurrogate(low)) {
+                    index++;
+                    action.accept(Character.toCodePoint(high, low));
+                    return true;
+                }
+            }
+            action.accept(high);
+            return true;
         }
-        for (int i = 0; i < length(); i++) {
-            diff = this.charAt(i) - that.charAt(i);
-            if (diff != 0) {
-                return diff;
+
+        @Override
+        public final Spliterator.OfInt trySplit() {
+            int middle = splitPoint(index, end);
+            if (middle > index && Character.isHighSurrogate(charAt(middle - 1)) && Character.isLowSurrogate(charAt(middle))) {
+                middle++;
             }
+            if (middle <= index || middle >= end) {
+                return null;
+            }
+            CodePointSpliterator prefix = new CodePointSpliterator(index, middle);
+            index = middle;
+            return prefix;
         }
-        return 0;
     }
 
     /**
-     * Removes the characters in a substring of this {@link CharacterBuffer}.<br>
+     * A format pattern, with the same syntax of {@link java.util.Formatter}, parsed once into literal segments and format specifiers, see {@link CharacterBuffer#format(FormatPattern, Object...)}.<br>
+     * The literal segments are copied straight into the memory pages, and the plain {@code %s}, {@code %d}, {@code %c} and {@code %b} specifiers
+     * are appended without any temporary {@link String}, the other specifiers are delegated to a {@link Formatter} that writes into the {@link CharacterBuffer}.
+     */
+    public static final class FormatPattern {
+
+        private static final int CACHE_LIMIT = 256;
+        private static final Map<String, FormatPattern> CACHE = new LinkedHashMap<String, FormatPattern>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected final boolean removeEldestEntry(Map.Entry<String, FormatPattern> eldest) {
+                return size() > CACHE_LIMIT;
+            }
+        };
+
+        private static final int PREVIOUS_ARGUMENT = -1;
+        private static final int NO_ARGUMENT = -2;
+
+        private static final String FLAGS = "-#+ 0,(";
+        private static final String CONVERSIONS = "bBhHsScCdoxXeEfgGaA%n";
+
+        /**
+         * Parses the specified format pattern, the 256 most recently used patterns are cached,
+         * so the same instance is returned for the same pattern while it is not evicted by other ones.
+         * 
+         * @param pattern
+         *            the format pattern, with the same syntax of {@link java.util.Formatter}.
+         * 
+         * @return the parsed {@link FormatPattern}.
+         * 
+         * @throws UnknownFormatConversionException
+         *             if the pattern has an unknown conversion.
+         */
+        public static FormatPattern compile(String pattern) {
+            // an access ordered LinkedHashMap changes on every look up, so even the hits need the lock
+            synchronized (CACHE) {
+                return CACHE.computeIfAbsent(pattern, FormatPattern::new);
+            }
+        }
+
+        private final String pattern;
+        private final char[][] literals;
+        private final String[] specifiers;
+        private final int[] arguments;
+        private final char[] conversions;
+
+        /**
+         * Private constructor, see {@link #compile(String)} method.
+         */
+        private FormatPattern(String pattern) {
+            this.pattern = pattern;
+            List<String> literals = new ArrayList<String>();
+            List<String> specifiers = new ArrayList<String>();
+            List<Integer> arguments = new ArrayList<Integer>();
+            StringBuilder conversions = new StringBuilder();
+            StringBuilder literal = new StringBuilder();
+            int ordinary = 0;
+            int i = 0;
+            while (i < pattern.length()) {
+                char c = pattern.charAt(i++);
+                if (c != '%') {
+                    literal.append(c);
+                    continue;
+                }
+                int argument = NO_ARGUMENT;
+                int digits = skipDigits(pattern, i);
+                if (digits > i && digits < pattern.length() && pattern.charAt(digits) == '$') {
+                    argument = Integer.parseInt(pattern.substring(i, digits)) - 1;
+                    if (argument < 0) {
+                        throw new MissingFormatArgumentException("%" + pattern.substring(i, digits + 1));
+                    }
+                    i = digits + 1;
+                } else if (i < pattern.length() && pattern.charAt(i) == '<') {
+                    argument = PREVIOUS_ARGUMENT;
+                    i++;
+                }
+                int options = i;
+                while (i < pattern.length() && FLAGS.indexOf(pattern.charAt(i)) >= 0) {
+                    i++;
+                }
+                i = skipDigits(pattern, i);
+                if (i < pattern.length() && pattern.charAt(i) == '.') {
+                    i = skipDigits(pattern, i + 1);
+                }
+                if (i >= pattern.length()) {
+                    throw new UnknownFormatConversionException("%");
+                }
+                char conversion = pattern.charAt(i++);
+                boolean plain = i - 1 == options;
+                if (conversion == 't' || conversion == 'T') {
+                    if (i >= pattern.length()) {
+                        throw new UnknownFormatConversionException(String.valueOf(conversion));
+                    }
+                    i++;
+                    plain = false;
+                } else if (CONVERSIONS.indexOf(conversion) < 0) {
+                    throw new UnknownFormatConversionException(String.valueOf(conversion));
+                }
+                if (conversion == '%' || conversion == 'n') {
+                    if (plain) {
+                        literal.append(conversion == '%' ? "%" : System.lineSeparator());
+                        continue;
+                    }
+                } else if (argument == NO_ARGUMENT) {
+                    argument = ordinary++;
+                }
+                literals.add(literal.toString());
+                literal.setLength(0);
+                // the argument index is removed, because the delegated specifier receives a single argument
+                specifiers.add("%" + pattern.substring(options, i));
+                arguments.add(argument);
+                conversions.append(plain && "sdcb".indexOf(conversion) >= 0 ? conversion : '\u0000');
+            }
+            literals.add(literal.toString());
+            this.literals = new char[literals.size()][];
+            for (int j = 0; j < literals.size(); j++) {
+                this.literals[j] = literals.get(j).toCharArray();
+            }
+            this.specifiers = specifiers.toArray(new String[specifiers.size()]);
+            this.arguments = new int[arguments.size()];
+            for (int j = 0; j < arguments.size(); j++) {
+                this.arguments[j] = arguments.get(j);
+            }
+            this.conversions = conversions.toString().toCharArray();
+        }
+
+        /**
+         * @return the format pattern.
+         */
+        @Override
+        public final String toString() {
+            return pattern;
+        }
+
+        private static int skipDigits(String pattern, int index) {
+            while (index < pattern.length() && pattern.charAt(index) >= '0' && pattern.charAt(index) <= '9') {
+                index++;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Builder used to determine the {@link CharacterBuffer}'s heap budget, see {@link Amount#maxHeap(int)}.<br>
+     * <b>Factory methods:</b><br>
+     * - {@link #bytes()}: returns a new {@link CharacterBuffer} whith page sizes that have the {@link Amount amount} of {@code byte}s and this budget of {@code byte}s.<br>
+     * - {@link #chars()}: returns a new {@link CharacterBuffer} whith page sizes that have the {@link Amount amount} of {@code char}s and this budget of {@code byte}s.<br>
+     * <b>Multipliers:</b><br>
+     * - {@link #kilo()}: returns the {@link Amount amount} with this budget multiplied by 2<sup>10</sup> {@code byte}s.<br>
+     * - {@link #mega()}: returns the {@link Amount amount} with this budget multiplied by 2<sup>20</sup> {@code byte}s.<br>
+     * - {@link #giga()}: returns the {@link Amount amount} with this budget multiplied by 2<sup>30</sup> {@code byte}s.
+     */
+    public static final class HeapBudget {
+
+        private final Amount amount;
+        private final long budget;
+
+        /**
+         * Private constructor, se {@link Amount#maxHeap(int)} method
+         */
+        private HeapBudget(Amount amount, long budget) {
+            if (budget < 1) {
+                throw new IllegalArgumentException("budget must be greater than zero");
+            }
+            this.amount = amount;
+            this.budget = budget;
+        }
+
+        /**
+         * @return an {@link CharacterBuffer} with memory page sizes that that have the {@link Amount amount} of bytes, limited to this budget of bytes.
+         */
+        public final CharacterBuffer bytes() {
+            return apply(budget).bytes();
+        }
+
+        /**
+         * @return an {@link CharacterBuffer} with memory page sizes that have the {@link Amount amount} of chars, limited to this budget of bytes.
+         */
+        public final CharacterBuffer chars() {
+            return apply(budget).chars();
+        }
+
+        /**
+         * @return the {@link Amount amount} with this budget multiplied by 2<sup>30</sup> bytes.
+         */
+        public final Amount giga() {
+            return apply(budget * 1073741824L);
+        }
+
+        /**
+         * @return the {@link Amount amount} with this budget multiplied by 2<sup>10</sup> bytes.
+         */
+        public final Amount kilo() {
+            return apply(budget * 1024L);
+        }
+
+        /**
+         * @return the {@link Amount amount} with this budget multiplied by 2<sup>20</sup> bytes.
+         */
+        public final Amount mega() {
+            return apply(budget * 1048576L);
+        }
+
+        /**
+         * @return a copy of the {@link Amount amount} with the specified heap budget.
+         */
+        private final Amount apply(long budget) {
+            Amount amount = this.amount.copy(this.amount.amount);
+            amount.maxHeap = budget;
+            return amount;
+        }
+    }
+
+    /**
+     * Page aware {@link Spliterator} of the lines of this {@link CharacterBuffer}, each line is a zero-copy {@link View}.<br>
+     * It splits right after the first line terminator found after a memory page boundary.
+     */
+    private final class LineSpliterator implements Spliterator<CharSequence> {
+
+        private int index;
+        private final int end;
+
+        private LineSpliterator(int start, int end) {
+            this.index = start;
+            this.end = end;
+        }
+
+        @Override
+        public final int characteristics() {
+            return ORDERED | NONNULL;
+        }
+
+        @Override
+        public final long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public final boolean tryAdvance(Consumer<? super CharSequence> action) {
+            if (index >= end) {
+                return false;
+            }
+            int start = index;
+            int terminator = indexOfLineTerminator(start, end);
+            index = terminator < end ? nextLine(terminator) : end;
+            action.accept(new View(CharacterBuffer.this, start, terminator));
+            return true;
+        }
+
+        @Override
+        public final Spliterator<CharSequence> trySplit() {
+            int middle = splitPoint(index, end);
+            if (middle <= index) {
+                return null;
+            }
+            int terminator = indexOfLineTerminator(middle, end);
+            if (terminator >= end) {
+                return null;
+            }
+            middle = nextLine(terminator);
+            if (middle >= end) {
+                return null;
+            }
+            LineSpliterator prefix = new LineSpliterator(index, middle);
+            index = middle;
+            return prefix;
+        }
+
+        /**
+         * Returns the index of the line that starts after the line terminator at the specified index.
+         */
+        private final int nextLine(int terminator) {
+            return charAt(terminator) == '\r' && terminator + 1 < end && charAt(terminator + 1) == '\n' ? terminator + 2 : terminator + 1;
+        }
+    }
+
+    /**
+     * Table of the full memory pages of the buffers with {@link Amount#deduplicate() deduplication}, that maps the content of a page to a single {@code char} array.<br>
+     * The pages are weakly referenced, so they are dropped from the table when no buffer holds them anymore.<br>
+     * The table is concurrent and the pages are hashed before touching it, so the buffers of different threads only contend for pages with the same hash.
+     */
+    private static final class PageTable {
+
+        /**
+         * Key of a memory page, equal to any other key of a page with the same characters, its page is weakly referenced.
+         */
+        private static final class PageKey extends WeakReference<char[]> {
+
+            private final int hash;
+
+            private PageKey(char[] chars, int hash, ReferenceQueue<char[]> queue) {
+                super(chars, queue);
+                this.hash = hash;
+            }
+
+            @Override
+            public final boolean equals(Object object) {
+                if (object == this) {
+                    return true;
+                }
+                if (!(object instanceof PageKey)) {
+                    return false;
+                }
+                PageKey that = (PageKey) object;
+                if (this.hash != that.hash) {
+                    return false;
+                }
+                char[] these = this.get();
+                char[] those = that.get();
+                return these != null && those != null && Arrays.equals(these, those);
+            }
+
+            @Override
+            public final int hashCode() {
+                return hash;
+            }
+        }
+
+        private final Map<PageKey, PageKey> keys = new ConcurrentHashMap<PageKey, PageKey>();
+        private final ReferenceQueue<char[]> queue = new ReferenceQueue<char[]>();
+
+        /**
+         * Returns the interned memory page with the same characters of the specified one, the specified page is interned if there is none.
+         */
+        private final char[] intern(char[] chars) {
+            // the keys whose pages were garbage collected are removed by identity
+            for (Object stale = queue.poll(); stale != null; stale = queue.poll()) {
+                keys.remove(stale);
+            }
+            PageKey key = new PageKey(chars, Arrays.hashCode(chars), queue);
+            for (;;) {
+                PageKey existing = keys.putIfAbsent(key, key);
+                if (existing == null) {
+                    return chars;
+                }
+                char[] interned = existing.get();
+                if (interned != null) {
+                    return interned;
+                }
+                // its page was garbage collected but the key was not drained yet
+                keys.remove(existing, existing);
+            }
+        }
+    }
+
+    /**
+     * Builder used to create a {@link PersistentCharacterBuffer}, see {@link Amount#persistent()}.<br>
+     * <b>Factory methods:</b><br>
+     * - {@link #bytes()}: returns a new {@link PersistentCharacterBuffer} whith page sizes that have the {@link Amount amount} of {@code byte}s.<br>
+     * - {@link #chars()}: returns a new {@link PersistentCharacterBuffer} whith page sizes that have the {@link Amount amount} of {@code char}s.
+     */
+    public static final class Persistent {
+
+        private final int amount;
+
+        /**
+         * Private constructor, se {@link Amount#persistent()} method
+         */
+        private Persistent(int amount) {
+            this.amount = amount;
+        }
+
+        /**
+         * @return a {@link PersistentCharacterBuffer} with memory page sizes that that have the {@link Amount amount} of bytes.
+         */
+        public final PersistentCharacterBuffer bytes() {
+            if (amount < 2) {
+                throw new IllegalArgumentException("amount of bytes must hold at least one char");
+            }
+            return new PersistentCharacterBuffer(amount >> 1);
+        }
+
+        /**
+         * @return a {@link PersistentCharacterBuffer} with memory page sizes that have the {@link Amount amount} of chars.
+         */
+        public final PersistentCharacterBuffer chars() {
+            return new PersistentCharacterBuffer(amount);
+        }
+    }
+
+    /**
+     * Lazy splitter of a {@link CharacterBuffer} into tokens, see {@link CharacterBuffer#split(char)}, {@link CharacterBuffer#split(CharSequence)} and {@link CharacterBuffer#tokenize(CharPredicate)}.<br>
+     * Each token is a zero-copy {@link View} that shares the memory pages of the {@link CharacterBuffer}, and the next delimiter is only searched when the next token is requested.<br>
+     * <b>Hint:</b> The {@link CharacterBuffer} must not be changed while its tokens are iterated.
+     */
+    public final class Splitter implements Iterable<View> {
+
+        /**
+         * Iterator of the tokens, the delimiters are searched straight in the memory pages.
+         */
+        private final class TokenIterator implements Iterator<View> {
+
+            private int index;
+            private View view;
+
+            @Override
+            public final boolean hasNext() {
+                if (skipEmpty) {
+                    index = indexOfMatch(predicate, false, index);
+                    return index < size;
+                }
+                return index <= size;
+            }
+
+            @Override
+            public final View next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int start = index;
+                int end = delimiter == null ? indexOfMatch(predicate, true, start) : indexOfDelimiter(delimiter, start);
+                // after the last token the index passes the length, so that a trailing delimiter still yields an empty token
+                index = end == size ? size + 1 : end + (delimiter == null ? 1 : delimiter.length());
+                if (!reuseView) {
+                    return new View(CharacterBuffer.this, start, end);
+                }
+                if (view == null) {
+                    view = new View(CharacterBuffer.this, start, end);
+                } else {
+                    view.start = start;
+                    view.end = end;
+                }
+                return view;
+            }
+        }
+
+        private final CharPredicate predicate;
+        private final String delimiter;
+        private final boolean skipEmpty;
+        private final boolean reuseView;
+
+        /**
+         * Private constructor, the splitters are created by the {@link CharacterBuffer}.
+         */
+        private Splitter(CharPredicate predicate, String delimiter, boolean skipEmpty, boolean reuseView) {
+            this.predicate = predicate;
+            this.delimiter = delimiter;
+            this.skipEmpty = skipEmpty;
+            this.reuseView = reuseView;
+        }
+
+        /**
+         * Returns an {@link Iterator} of the tokens, each call starts over from the beginning of the {@link CharacterBuffer}.
+         * 
+         * @return an {@link Iterator} of the tokens.
+         */
+        @Override
+        public final Iterator<View> iterator() {
+            return new TokenIterator();
+        }
+
+        /**
+         * Returns a copy of this splitter whose {@link Iterator}s return a single {@link View} instance, that is moved to the next token on each call of {@link Iterator#next()},
+         * so tight loops do not allocate an object per token.<br>
+         * <b>Hint:</b> The token must not be kept after the next one is requested, its {@link View#toString()} may be used to keep it.
+         * 
+         * @return a splitter that reuses the same {@link View}.
+         */
+        public final Splitter reuseView() {
+            return new Splitter(predicate, delimiter, skipEmpty, true);
+        }
+
+        /**
+         * @return a sequential {@link Stream} of the tokens.
+         */
+        public final Stream<View> stream() {
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+        }
+    }
+
+    /**
+     * A text template with {@code ${name}} placeholders, parsed once into literal segments and value slots, see {@link CharacterBuffer#render(Template, Object...)}.<br>
+     * The literal segments are copied straight into the memory pages, and the values are appended through the same fast paths of
+     * {@link CharacterBuffer#append(int)}, {@link CharacterBuffer#append(long)} and {@link CharacterBuffer#append(CharSequence)}, without any temporary {@link String}.<br>
+     * A placeholder name may appear more than once, the value slots are the distinct names in the order of their first appearance, and {@code $$} is a literal {@code $}.
+     *
+     * <p>
+     * <b>Example:</b>
+     * </p>
+     *
+     * <pre>
+     * Template greeting = Template.compile("Hello ${name}, you owe ${amount}");
+     * buffer.render(greeting, "John", 42);
+     * </pre>
+     */
+    public static final class Template {
+
+        /**
+         * Parses the specified template.
+         * 
+         * @param template
+         *            the template, with {@code ${name}} placeholders.
+         * 
+         * @return the parsed {@link Template}.
+         * 
+         * @throws IllegalArgumentException
+         *             if a placeholder is not closed or has no name.
+         */
+        public static Template compile(String template) {
+            return new Template(template);
+        }
+
+        private final String template;
+        private final char[][] literals;
+        private final int[] slots;
+        private final String[] names;
+
+        /**
+         * Private constructor, see {@link #compile(String)} method.
+         */
+        private Template(String template) {
+            this.template = template;
+            List<String> literals = new ArrayList<String>();
+            List<String> names = new ArrayList<String>();
+            List<Integer> slots = new ArrayList<Integer>();
+            StringBuilder literal = new StringBuilder();
+            int i = 0;
+            while (i < template.length()) {
+                char c = template.charAt(i++);
+                if (c != '$' || i == template.length()) {
+                    literal.append(c);
+                    continue;
+                }
+                char next = template.charAt(i);
+                if (next == '$') {
+                    literal.append('$');
+                    i++;
+                    continue;
+                }
+                if (next != '{') {
+                    literal.append(c);
+                    continue;
+                }
+                int close = template.indexOf('}', i + 1);
+                if (close < 0) {
+                    throw new IllegalArgumentException("unclosed placeholder at index " + (i - 1) + ": " + template);
+                }
+                String name = template.substring(i + 1, close).trim();
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("unnamed placeholder at index " + (i - 1) + ": " + template);
+                }
+                int slot = names.indexOf(name);
+                if (slot < 0) {
+                    slot = names.size();
+                    names.add(name);
+                }
+                literals.add(literal.toString());
+                literal.setLength(0);
+                slots.add(slot);
+                i = close + 1;
+            }
+            literals.add(literal.toString());
+            this.literals = new char[literals.size()][];
+            for (int j = 0; j < literals.size(); j++) {
+                this.literals[j] = literals.get(j).toCharArray();
+            }
+            this.slots = new int[slots.size()];
+            for (int j = 0; j < slots.size(); j++) {
+                this.slots[j] = slots.get(j);
+            }
+            this.names = names.toArray(new String[names.size()]);
+        }
+
+        /**
+         * @return the distinct placeholder names, in the order of their first appearance, that is the order of the values of {@link CharacterBuffer#render(Template, Object...)}.
+         */
+        public final List<String> names() {
+            return Collections.unmodifiableList(Arrays.asList(names));
+        }
+
+        /**
+         * @return the template.
+         */
+        @Override
+        public final String toString() {
+            return template;
+        }
+    }
+
+    /**
+     * A read-only and zero-copy view of a range of characters of a {@link CharacterBuffer}.<br>
+     * The view shares the memory pages of its {@link CharacterBuffer}, so the changes made to the buffer after the view was created are visible through it.<br>
+     * <b>Hint:</b> A {@link Splitter#reuseView() reusing} {@link Splitter} moves the same view from token to token.
+     */
+    public static final class View implements CharSequence {
+
+        private final CharacterBuffer buffer;
+        private int start;
+        private int end;
+
+        /**
+         * Private constructor, the views are created by the {@link CharacterBuffer}.
+         */
+        private View(CharacterBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public final char charAt(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("index: " + index);
+            }
+            return buffer.charAt(start + index);
+        }
+
+        /**
+         * @return the index in the {@link CharacterBuffer} where this view ends, exclusive.
+         */
+        public final int end() {
+            return end;
+        }
+
+        @Override
+        public final int length() {
+            return end - start;
+        }
+
+        /**
+         * @return the index in the {@link CharacterBuffer} where this view starts, inclusive.
+         */
+        public final int start() {
+            return start;
+        }
+
+        @Override
+        public final View subSequence(int start, int end) {
+            if (start < 0 || end > end() - start() || start > end) {
+                throw new IndexOutOfBoundsException("start: " + start + ", end: " + end);
+            }
+            return new View(buffer, this.start + start, this.start + end);
+        }
+
+        @Override
+        public final String toString() {
+            char[] chars = new char[end - start];
+            buffer.copyChars(start, end, chars, 0);
+            return new String(chars);
+        }
+    }
+
+    private static final long serialVersionUID = 1;
+
+    /*
+     * Version of the layout written by writeObject.
+     * It is kept inside the stream, instead of changing the serialVersionUID, so that the buffers serialized with the format 1 can still be read.
+     */
+    private static final int SERIAL_FORMAT = 3;
+
+    /*
+     * Largest array that every JVM can allocate, some of them reserve header words in the arrays.
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /*
+     * Length from which transform processes the memory pages in parallel, below it the fork/join overhead outweighs the gain.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final PageTable PAGES = new PageTable();
+
+    private static final Map<Locale, Boolean> ASCII_DIGITS = new ConcurrentHashMap<Locale, Boolean>();
+
+    /**
+     * Returns the cached value, that is held directly or through a {@link SoftReference}, depending on the {@link CachePolicy}.
+     */
+    private static final Object dereference(Object cache) {
+        return cache instanceof SoftReference ? ((SoftReference<?>) cache).get() : cache;
+    }
+
+    /**
+     * Returns {@code true} if the {@link Locale} argument formats numbers with the digits from {@code '0'} to {@code '9'}.
+     */
+    private static final boolean hasAsciiDigits(Locale locale) {
+        Boolean ascii = ASCII_DIGITS.get(locale);
+        if (ascii == null) {
+            ascii = DecimalFormatSymbols.getInstance(locale).getZeroDigit() == '0';
+            ASCII_DIGITS.put(locale, ascii);
+        }
+        return ascii;
+    }
+
+    /**
+     * Returns {@code true} if all the {@code char}s in the specified range fit in a single {@code ISO-8859-1} {@code byte}.
+     */
+    private static final boolean isLatin1(char[] chars, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (chars[i] > '\u00FF') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the first {@code length} {@code char}s of a memory page written by {@link #writeChars(DataOutput, char[], int, byte[])}, using the {@code byte} array argument as the read buffer.<br>
+     * Shared by the serial forms of the {@link CharacterBuffer} and of the {@link CharacterText}.
+     */
+    static final void readChars(DataInput in, char[] chars, int length, byte[] bytes) throws IOException {
+        boolean latin1 = in.readBoolean();
+        for (int start = 0; start < length;) {
+            int count = Math.min(length - start, latin1 ? bytes.length : bytes.length / 2);
+            if (latin1) {
+                in.readFully(bytes, 0, count);
+                for (int i = 0; i < count; i++) {
+                    chars[start + i] = (char) (bytes[i] & 0xFF);
+                }
+            } else {
+                in.readFully(bytes, 0, count * 2);
+                for (int i = 0, j = 0; i < count; i++, j += 2) {
+                    chars[start + i] = (char) ((bytes[j] & 0xFF) << 8 | (bytes[j + 1] & 0xFF));
+                }
+            }
+            start += count;
+        }
+    }
+
+    /**
+     * Reads from the {@link FileChannel} argument, at the specified position, until the {@link ByteBuffer} is full.
+     */
+    private static final void readFully(FileChannel channel, ByteBuffer bytes, long position) throws IOException {
+        while (bytes.hasRemaining()) {
+            int count = channel.read(bytes, position);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            position += count;
+        }
+    }
+
+    /**
+     * Writes the first {@code length} {@code char}s of a memory page, as single {@code ISO-8859-1} {@code byte}s if all of them fit, otherwise as {@code UTF-16} pairs of {@code byte}s,
+     * using the {@code byte} array argument as the write buffer.<br>
+     * Shared by the serial forms of the {@link CharacterBuffer} and of the {@link CharacterText}.
+     */
+    static final void writeChars(DataOutput out, char[] chars, int length, byte[] bytes) throws IOException {
+        boolean latin1 = isLatin1(chars, 0, length);
+        out.writeBoolean(latin1);
+        for (int start = 0; start < length;) {
+            int count = Math.min(length - start, latin1 ? bytes.length : bytes.length / 2);
+            if (latin1) {
+                for (int i = 0; i < count; i++) {
+                    bytes[i] = (byte) chars[start + i];
+                }
+                out.write(bytes, 0, count);
+            } else {
+                for (int i = 0, j = 0; i < count; i++, j += 2) {
+                    bytes[j] = (byte) (chars[start + i] >>> 8);
+                    bytes[j + 1] = (byte) chars[start + i];
+                }
+                out.write(bytes, 0, count * 2);
+            }
+            start += count;
+        }
+    }
+
+    /**
+     * Prepares the {@link Amount amount} of memory that each memory page will allocate.
+     * 
+     * @param amount
+     *            The amount of memory that will be allocated for each new memory page.
+     * 
+     * @return An {@link Amount} object to build the instance of {@link CharacterBuffer}.
+     */
+    public static final Amount with(int amount) {
+        return new Amount(amount);
+    }
+
+    private int pageSize;
+    private int firstPageSize;
+
+    private char[][] memory;
+    private int size;
+    private int page;
+    private int offset;
+
+    private int hotPages;
+    private boolean compressed;
+    private boolean deduplicate;
+    private long maxHeap;
+    private byte[][] packed;
+    private BitSet spilled;
+    private LinkedHashSet<Integer> resident;
+    private transient int recentPage;
+
+    private CachePolicy cachePolicy;
+    private int cacheLimit;
+    private transient long toStringCacheHits;
+    private transient long toStringCacheMisses;
+    private transient CharacterBufferStats stats;
+
+    private transient Object toStringCache;
+    private transient Object prefixCache;
+    private transient int prefixLength;
+    private transient int hash;
+
+    private transient BitSet sharedPages;
+
+    private transient int[] lineStarts;
+    private transient int lineCount;
+    private transient int indexedLength;
+
+    private transient Formatter formatter;
+    private transient char[] digits;
+
+    private transient CharsetEncoder encoder;
+    private transient ByteBuffer encoderOutput;
+
+    private transient CharsetDecoder decoder;
+    private transient ByteBuffer decoderInput;
+
+    private transient Deflater deflater;
+    private transient Inflater inflater;
+    private transient byte[] packBuffer;
+    private transient FileChannel spillFile;
+
+    /**
+     * Private constructor, see {@link CharacterBuffer#with(int)} method.
+     */
+    private CharacterBuffer(int pageSize, Amount options) {
+        this.pageSize = pageSize;
+        this.firstPageSize = Math.min(options.firstPageSize, pageSize);
+        this.hotPages = options.hotPages;
+        this.compressed = options.hotPages > 0;
+        this.deduplicate = options.deduplicate;
+        this.maxHeap = options.maxHeap;
+        this.cachePolicy = options.cachePolicy;
+        this.cacheLimit = options.cacheLimit;
+        this.stats = options.stats;
+        if (maxHeap > 0) {
+            // the write page is always in the heap, so it is not counted as a hot page
+            int budgetPages = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxHeap / (pageSize * 2L) - 1));
+            hotPages = hotPages > 0 ? Math.min(hotPages, budgetPages) : budgetPages;
+        }
+        allocate();
+    }
+
+    /**
+     * Appends the {@link String} representation of the {@code boolean} argument to this {@link CharacterBuffer}.
+     * 
+     * @param value
+     *            the {@code boolean} to append.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer append(boolean value) {
+        return append(String.valueOf(value));
+    }
+
+    /**
+     * Appends the {@link String} representation of the {@code char} argument to this {@link CharacterBuffer}.
+     * 
+     * @param value
+     *            the {@code char} to append.
+     * 
+     * @return a reference to this object.
+     */
+    @Override
+    public final CharacterBuffer append(char value) {
+        appended();
+        char[] chars = memory[page];
+        chars[offset] = value;
+        if (++offset == chars.length) {
+            pageFull();
+        }
+        ++size;
+        return this;
+    }
+
+    /**
+     * Appends the {@link String} representation of the {@code char} array argument to this {@link CharacterBuffer}.
+     * 
+     * @param characters
+     *            the {@code char} array to append.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer append(char[] characters) {
+        return append(characters, 0, characters.length);
+    }
+
+    /**
+     * Appends the {@link String} representation of a subarray of the {@code char} array argument to this {@link CharacterBuffer}.
+     * 
+     * @param characters
+     *            the {@code char} array to append.
+     * 
+     * @param offset
+     *            the index of the first {@code char} to append.
+     * 
+     * @param length
+     *            the number of {@code char}s to append.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer append(char[] characters, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > characters.length - length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + characters.length);
+        }
+        if (length < 1) {
+            return this;
+        }
+        appended();
+        // the characters are copied straight into the memory pages, without an intermediate String
+        while (length > 0) {
+            char[] chars = memory[page];
+            int count = Math.min(chars.length - this.offset, length);
+            System.arraycopy(characters, offset, chars, this.offset, count);
+            offset += count;
+            length -= count;
+            size += count;
+            if ((this.offset += count) == chars.length) {
+                pageFull();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends the specified {@code CharSequence} to this {@link CharacterBuffer}.
+     * 
+     * @param text
+     *            the {@code CharSequence} to append.
+     * 
+     * @return a reference to this object.
+     */
+    @Override
+    public final CharacterBuffer append(CharSequence text) {
+        if (text == null) {
+            text = "null";
+        }
+        return appendChars(text, 0, text.length());
+    }
+
+    /**
+     * Appends a subsequence of the specified {@code CharSequence} to this {@link CharacterBuffer}.
+     * 
+     * @param text
+     *            the {@code CharSequence} to append.
+     * 
+     * @param start
+     *            the starting index of the subsequence to append.
+     * 
+     * @param end
+     *            the end index of the subsequence to append.
+     * 
+     * @return a reference to this object.
+     */
+    @Override
+    public final CharacterBuffer append(CharSequence text, int start, int end) {
+        if (text == null) {
+            text = "null";
+        }
+        if (start < 0 || start > end || end > text.length()) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + text.length());
+        }
+        return appendChars(text, start, end);
+    }
+
+    /**
+     * Appends the {@link String} representation of the {@code double} argument to this {@link CharacterBuffer}.
+     * 
+     * @param value
+     *            the {@code double} to append.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer append(double value) {
+        return append(String.valueOf(value));
+    }
+
+    /**
+     * Appends the {@link String} representation of the {@code float} argument to this {@link CharacterBuffer}.
+     * 
+     * @param value
+     *            the {@code float} to append.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer append(float value) {
+        return append(String.valueOf(value));
+    }
+
+    /**
+     * Appends the {@link String} representation of the {@code int} argument to this {@link CharacterBuffer}.
+     * 
+     * @param value
+     *            the {@code int} to append.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer append(int value) {
+        return appendDigits(value);
+    }
+
+    /**
+     * Appends the {@link String} representation of the {@code long} argument to this {@link CharacterBuffer}.
+     * 
+     * @param value
+     *            the {@code long} to append.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer append(long value) {
+        return appendDigits(value);
+    }
+
+    /**
+     * Appends the {@link String} representation of the {@link Object} argument to this {@link CharacterBuffer}.
+     * 
+     * @param value
+     *            the {@link Object} to append.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer append(Object object) {
+        return append(String.valueOf(object));
+    }
+
+    /**
+     * Appends the specified {@code CharSequence} as a field of a CSV record, as defined by the RFC 4180, with comma as the delimiter, see {@link #appendCsvField(CharSequence, char)}.
+     * 
+     * @param text
+     *            the field value, {@code null} is appended as an empty field.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer appendCsvField(CharSequence text) {
+        return appendCsvField(text, ',');
+    }
+
+    /**
+     * Appends the specified {@code CharSequence} as a field of a CSV record, as defined by the RFC 4180.<br>
+     * The field is enclosed in double quotes, with its double quotes doubled, only if it contains the delimiter, a double quote, a carriage return or a line feed,
+     * otherwise it is copied into the memory pages at once.<br>
+     * Neither the delimiter nor the record separator are appended.
+     * 
+     * @param text
+     *            the field value, {@code null} is appended as an empty field.
+     * 
+     * @param delimiter
+     *            the delimiter of the fields of the record.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer appendCsvField(CharSequence text, char delimiter) {
+        if (text == null) {
+            return this;
+        }
+        int length = text.length();
+        int special = 0;
+        while (special < length) {
+            char c = text.charAt(special);
+            if (c == delimiter || c == '"' || c == '\r' || c == '\n') {
+                break;
+            }
+            special++;
+        }
+        if (special == length) {
+            return appendChars(text, 0, length);
+        }
+        append('"');
+        int run = 0;
+        for (int i = special; i < length; i++) {
+            if (text.charAt(i) == '"') {
+                appendChars(text, run, i + 1);
+                // the next run starts at the same double quote, so it is appended twice
+                run = i;
+            }
+        }
+        appendChars(text, run, length);
+        return append('"');
+    }
+
+    /**
+     * Appends the specified {@code CharSequence} escaped as the content of a JSON string, the enclosing double quotes are not appended.<br>
+     * The double quote, the backslash and the control characters are escaped, and so are the {@code U+2028} and {@code U+2029} separators, that are not valid in JavaScript strings.<br>
+     * The runs of characters that need no escaping are copied into the memory pages at once, so a text without them costs a single copy.
+     * 
+     * @param text
+     *            the {@code CharSequence} to escape.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer appendJsonEscaped(CharSequence text) {
+        if (text == null) {
+            text = "null";
+        }
+        int length = text.length();
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= ' ' && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            appendChars(text, run, i);
+            run = i + 1;
+            switch (c) {
+                case '"':
+                    append("\\\"");
+                    break;
+                case '\\':
+                    append("\\\\");
+                    break;
+                case '\b':
+                    append("\\b");
+                    break;
+                case '\f':
+                    append("\\f");
+                    break;
+                case '\n':
+                    append("\\n");
+                    break;
+                case '\r':
+                    append("\\r");
+                    break;
+                case '\t':
+                    append("\\t");
+                    break;
+                default:
+                    append("\\u").append(HEX_DIGITS[c >> 12]).append(HEX_DIGITS[(c >> 8) & 15]).append(HEX_DIGITS[(c >> 4) & 15]).append(HEX_DIGITS[c & 15]);
+            }
+        }
+        return appendChars(text, run, length);
+    }
+
+    /**
+     * Appends the specified {@code CharSequence} escaped as XML or HTML text or attribute value, the characters {@code <}, {@code >}, {@code &}, {@code "} and {@code '} are replaced by their entities.<br>
+     * The runs of characters that need no escaping are copied into the memory pages at once, so a text without them costs a single copy.
+     * 
+     * @param text
+     *            the {@code CharSequence} to escape.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer appendXmlEscaped(CharSequence text) {
+        if (text == null) {
+            text = "null";
+        }
+        int length = text.length();
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            String entity;
+            switch (text.charAt(i)) {
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '"':
+                    entity = "&quot;";
+                    break;
+                case '\'':
+                    entity = "&#39;";
+                    break;
+                default:
+                    continue;
+            }
+            appendChars(text, run, i);
+            append(entity);
+            run = i + 1;
+        }
+        return appendChars(text, run, length);
+    }
+
+    /**
+     * Returns the amount of {@code char}s of the memory pages currently allocated from the beginning up to the first missing one,
+     * that is, how many {@code char}s fit in this {@link CharacterBuffer} before a new memory page is allocated.
+     * 
+     * @return the current capacity.
+     */
+    public final int capacity() {
+        long capacity = (long) page * pageSize;
+        for (int i = page; i < memory.length && memory[i] != null; i++) {
+            capacity += memory[i].length;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, capacity);
+    }
+
+    /**
+     * Returns the {@code char} value in this {@link CharacterBuffer} at the specified index.
+     * 
+     * @param index
+     *            the index of the desired {@code char} value.
+     * 
+     * @return the {@code char} value at the specified index.
+     */
+    @Override
+    public final char charAt(int index) {
+        return page(index / pageSize)[index % pageSize];
+    }
+
+    /**
+     * Returns a stream of the {@code char} values of this {@link CharacterBuffer}, zero-extended to {@code int}s.<br>
+     * The memory pages are traversed directly, and a parallel stream splits the work on memory page boundaries.<br>
+     * <b>Hint:</b> When the cold memory pages are {@link Amount#compress(int) compressed} or {@link Amount#maxHeap(int) spilled}, the stream is never split.
+     * 
+     * @return an {@link IntStream} of the {@code char} values of this {@link CharacterBuffer}.
+     */
+    @Override
+    public final IntStream chars() {
+        return StreamSupport.intStream(new CharSpliterator(0, size), false);
+    }
+
+    /**
+     * Deletes the temporary file of the {@link Amount#maxHeap(int) spilled} memory pages of this {@link CharacterBuffer}, if any.<br>
+     * Only when there are spilled memory pages all the characters are removed, since part of them lives in that file, otherwise this method does nothing and the content is kept.<br>
+     * The buffer can still be used after it is closed, a new temporary file is created if its memory pages are spilled again.
+     */
+    @Override
+    public final void close() {
+        if (spillFile != null) {
+            deleteAll();
+        }
+    }
+
+    /**
+     * Returns a stream of the code points of this {@link CharacterBuffer}, surrogate pairs split by a memory page boundary are combined as well.<br>
+     * The memory pages are traversed directly, and a parallel stream splits the work on memory page boundaries.<br>
+     * <b>Hint:</b> When the cold memory pages are {@link Amount#compress(int) compressed} or {@link Amount#maxHeap(int) spilled}, the stream is never split.
+     * 
+     * @return an {@link IntStream} of the code points of this {@link CharacterBuffer}.
+     */
+    @Override
+    public final IntStream codePoints() {
+        return StreamSupport.intStream(new CodePointSpliterator(0, size), false);
+    }
+
+    /**
+     * Compares this {@link CharacterBuffer} with the {@link CharSequence} argument.
+     * 
+     * @return {@code 0} if {@code this} is equals to the {@link CharSequence} argument.<br>
+     *         A positive number if {@code this} is greater than the {@link CharSequence} argument.<br>
+     *         A negative number if {@code this} is less than the {@link CharSequence} argument.
+     */
+    @Override
+    public final int compareTo(CharSequence that) {
+        int diff = this.length() - that.length();
+        if (diff != 0) {
+            return diff;
+        }
+        int index = mismatch(that, size);
+        return index < size ? this.charAt(index) - that.charAt(index) : 0;
+    }
+
+    /**
+     * Compares this {@link CharacterBuffer} with the {@link CharSequence} argument lexicographically, the same way {@link String#compareTo(String)} does.<br>
+     * Unlike {@link #compareTo(CharSequence)}, that orders by length first, a shorter sequence is only less than a longer one when it is a prefix of it.
+     * 
+     * @param that
+     *            the {@link CharSequence} to compare against.
+     * 
+     * @return {@code 0} if {@code this} is equals to the {@link CharSequence} argument.<br>
+     *         A positive number if {@code this} is lexicographically greater than the {@link CharSequence} argument.<br>
+     *         A negative number if {@code this} is lexicographically less than the {@link CharSequence} argument.
+     */
+    public final int compareToLexicographically(CharSequence that) {
+        int length = Math.min(size, that.length());
+        int index = mismatch(that, length);
+        return index < length ? this.charAt(index) - that.charAt(index) : size - that.length();
+    }
+
+    /**
+     * Compares this {@link CharacterBuffer} to the specified {@link CharSequence}.<br>
+     * The lengths are compared first, then the characters are compared page by page without creating any {@link String}.
+     * 
+     * @param text
+     *            the {@link CharSequence} to compare against.
+     * 
+     * @return {@code true} if this {@link CharacterBuffer} represents the same sequence of characters as the specified {@link CharSequence}.
+     */
+    public final boolean contentEquals(CharSequence text) {
+        if (text == this) {
+            return true;
+        }
+        if (text.length() != size) {
+            return false;
+        }
+        if (text instanceof CharacterBuffer) {
+            return contentEquals((CharacterBuffer) text);
+        }
+        return mismatch(text, size) == size;
+    }
+
+    /**
+     * Copies all the characters of this {@link CharacterBuffer} into the {@link CharBuffer} argument, at its current position, page by page.<br>
+     * The position of the {@link CharBuffer} is advanced by the length of this {@link CharacterBuffer}, heap and direct buffers are both supported.
+     * 
+     * @param target
+     *            the {@link CharBuffer} that receives the characters.
+     * 
+     * @return the {@link CharBuffer} argument.
+     * 
+     * @throws BufferOverflowException
+     *             if there is insufficient space in the {@link CharBuffer}, in that case nothing is copied.
+     */
+    public final CharBuffer copyTo(CharBuffer target) {
+        if (target.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        forEachChunk(0, size, target::put);
+        return target;
+    }
+
+    /**
+     * Appends all the characters of this {@link CharacterBuffer} to the {@link CharacterBuffer} argument, page by page, without any intermediate copy.
+     * 
+     * @param target
+     *            the {@link CharacterBuffer} that receives the characters.
+     * 
+     * @return the {@link CharacterBuffer} argument.
+     */
+    public final CharacterBuffer copyTo(CharacterBuffer target) {
+        forEachChunk(0, size, target::append);
+        return target;
+    }
+
+    /**
+     * Removes the characters in a substring of this {@link CharacterBuffer}.<br>
      * The substring begins at the specified {@code start} and extends to the character at index {@code end - 1}.<br>
-     * If {@code start} is equal to {@code end}, no changes are made. *
+     * If {@code start} is equal to {@code end}, no changes are made.<br>
+     * Like {@link #setLength(int)}, the memory pages after the new length are kept to be reused, {@link #trimToSize()} releases them.
+     * 
+     * @param start
+     *            The beginning index, inclusive.
+     * 
+     * @param end
+     *            The ending index, exclusive.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer delete(int start, int end) {
+        if (start == end) {
+            return this;
+        }
+        changed(start);
+        int last = end > size ? size - 1 : end - 1;
+        int destinyPage = start / pageSize;
+        int destinyOffset = start % pageSize;
+
+        int remaining = size - last - 1;
+        int sourcePage = (last + 1) / pageSize;
+        int sourceOffset = (last + 1) % pageSize;
+        if (stats != null) {
+            stats.sized(size);
+            stats.deleteMoved(remaining);
+        }
+        while (remaining > 0) {
+            int length = Math.min(pageSize - sourceOffset, pageSize - destinyOffset);
+            length = Math.min(length, remaining);
+            char[] source = page(sourcePage);
+            System.arraycopy(source, sourceOffset, writablePage(destinyPage), destinyOffset, length);
+            if ((destinyOffset = (destinyOffset + pageSize + length) % pageSize) == 0) {
+                ++destinyPage;
+            }
+            if ((sourceOffset = (sourceOffset + pageSize + length) % pageSize) == 0) {
+                ++sourcePage;
+            }
+            remaining -= length;
+        }
+        size -= (last - start + 1);
+        page = size / pageSize;
+        offset = size % pageSize;
+        char[] chars = writablePage(page);
+        Arrays.fill(chars, destinyOffset, chars.length, '\u0000');
+        truncated();
+        return this;
+    }
+
+    /**
+     * Removes all the characters from this {@link CharacterBuffer}.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer deleteAll() {
+        changed();
+        if (stats != null) {
+            stats.sized(size);
+        }
+        allocate();
+        size = 0;
+        page = 0;
+        offset = 0;
+        closeSpillFile();
+        return this;
+    }
+
+    /**
+     * Removes the the {@code char} at the specified position in this {@link CharacterBuffer}.
+     * 
+     * @param index
+     *            Index of {@code char} to remove
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer deleteCharAt(int index) {
+        return delete(index, index + 1);
+    }
+
+    /**
+     * Allocates at once the memory page directory and the memory pages needed to hold at least the specified amount of {@code char}s,
+     * so that appending up to that amount does not allocate anything.<br>
+     * <b>Hint:</b> When the cold memory pages are {@link Amount#compress(int) compressed} or {@link Amount#maxHeap(int) spilled}, only the memory page directory is allocated.
+     * 
+     * @param minimumCapacity
+     *            the minimum desired capacity, in {@code char}s.
+     */
+    public final void ensureCapacity(int minimumCapacity) {
+        if (minimumCapacity <= capacity()) {
+            return;
+        }
+        int pages = minimumCapacity / pageSize + 1;
+        if (page == 0 && memory[0].length < pageSize) {
+            memory[0] = Arrays.copyOf(memory[0], pages > 1 ? pageSize : minimumCapacity + 1);
+        }
+        ensureDirectory(pages);
+        if (hotPages > 0) {
+            return;
+        }
+        for (int i = page + 1; i < pages; i++) {
+            if (memory[i] == null) {
+                memory[i] = new char[pageSize];
+                if (stats != null) {
+                    stats.pageAllocated();
+                }
+            }
+        }
+    }
+
+    @Override
+    public final boolean equals(Object object) {
+        if (object == this) {
+            return true;
+        }
+        if (object instanceof CharacterBuffer) {
+            return contentEquals((CharacterBuffer) object);
+        }
+        return false;
+    }
+
+    /**
+     * Visits all the characters of this {@link CharacterBuffer} as runs of {@code char}s, one for each memory page.
+     * 
+     * @param consumer
+     *            the {@link ChunkConsumer} that receives each run.
+     */
+    public final void forEachChunk(ChunkConsumer consumer) {
+        forEachChunk(0, size, consumer);
+    }
+
+    /**
+     * Returns an immutable {@link CharacterText} with the characters of this {@link CharacterBuffer}, that shares its memory pages instead of copying them.<br>
+     * This {@link CharacterBuffer} can still be changed afterwards: appending writes after the frozen characters, so nothing is copied,
+     * and the other changes copy only the shared memory pages they touch, so the {@link CharacterText} never changes.<br>
+     * <b>Hint:</b> When the cold memory pages are {@link Amount#compress(int) compressed} or {@link Amount#maxHeap(int) spilled}, they are brought back to the heap to be shared.
+     * 
+     * @return a {@link CharacterText} with the current characters.
+     */
+    public final CharacterText freeze() {
+        char[][] pages = new char[(int) ((size + (long) pageSize - 1) / pageSize)][];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = page(i);
+        }
+        if (sharedPages == null) {
+            sharedPages = new BitSet();
+        }
+        sharedPages.set(0, pages.length);
+        return new CharacterText(pages, pageSize, 0, size, (String) dereference(toStringCache), hash);
+    }
+
+    /**
+     * Visits the characters from {@code start} to {@code end} of this {@link CharacterBuffer} as runs of {@code char}s, one for each memory page.<br>
+     * The runs are delivered in order and are never empty.
+     * 
+     * @param start
+     *            the beginning index, inclusive.
+     * 
+     * @param end
+     *            the ending index, exclusive.
+     * 
+     * @param consumer
+     *            the {@link ChunkConsumer} that receives each run.
+     */
+    public final void forEachChunk(int start, int end, ChunkConsumer consumer) {
+        if (start < 0 || end > size || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + size);
+        }
+        while (start < end) {
+            int from = start % pageSize;
+            int length = Math.min(pageSize - from, end - start);
+            consumer.accept(page(start / pageSize), from, length);
+            start += length;
+        }
+    }
+
+    /**
+     * Appends the arguments formatted by the specified pattern, the same way {@link String#format(String, Object...)} does, with the default {@link Locale} for formatting.<br>
+     * The parsed patterns are cached, see {@link #format(FormatPattern, Object...)}.
+     * 
+     * @param pattern
+     *            the format pattern, with the same syntax of {@link Formatter}.
+     * 
+     * @param args
+     *            the arguments referenced by the format specifiers.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer format(String pattern, Object... args) {
+        return format(FormatPattern.compile(pattern), args);
+    }
+
+    /**
+     * Appends the arguments formatted by the specified {@link FormatPattern}, the same way {@link String#format(String, Object...)} does, with the default {@link Locale} for formatting.<br>
+     * The literal segments and the plain {@code %s}, {@code %d}, {@code %c} and {@code %b} specifiers are written straight into the memory pages,
+     * the other specifiers are formatted by a {@link Formatter} that appends to this {@link CharacterBuffer}.
+     * 
+     * @param pattern
+     *            the parsed format pattern.
+     * 
+     * @param args
+     *            the arguments referenced by the format specifiers.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer format(FormatPattern pattern, Object... args) {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        int previous = -1;
+        for (int i = 0; i < pattern.conversions.length; i++) {
+            char[] literal = pattern.literals[i];
+            append(literal, 0, literal.length);
+            int argument = pattern.arguments[i];
+            if (argument == FormatPattern.NO_ARGUMENT) {
+                formatter(locale).format(pattern.specifiers[i]);
+                continue;
+            }
+            if (argument == FormatPattern.PREVIOUS_ARGUMENT) {
+                argument = previous;
+            }
+            if (argument < 0 || (args != null && argument >= args.length)) {
+                throw new MissingFormatArgumentException(pattern.specifiers[i]);
+            }
+            previous = argument;
+            Object value = args == null ? null : args[argument];
+            if (!appendFormatted(pattern.conversions[i], value, locale)) {
+                formatter(locale).format(pattern.specifiers[i], value);
+            }
+        }
+        char[] literal = pattern.literals[pattern.conversions.length];
+        return append(literal, 0, literal.length);
+    }
+
+    /**
+     * Copies the characters from {@code srcBegin} to {@code srcEnd} of this {@link CharacterBuffer} into the destination {@code char} array, page by page,
+     * the same way {@link StringBuilder#getChars(int, int, char[], int)} does.
+     * 
+     * @param srcBegin
+     *            the beginning index, inclusive.
+     * 
+     * @param srcEnd
+     *            the ending index, exclusive.
+     * 
+     * @param dst
+     *            the {@code char} array that receives the characters.
+     * 
+     * @param dstBegin
+     *            the index in the destination array where the first character is copied to.
+     */
+    public final void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        if (srcBegin < 0 || srcEnd > size || srcBegin > srcEnd) {
+            throw new IndexOutOfBoundsException("srcBegin: " + srcBegin + ", srcEnd: " + srcEnd + ", length: " + size);
+        }
+        if (dstBegin < 0 || dstBegin > dst.length - (srcEnd - srcBegin)) {
+            throw new IndexOutOfBoundsException("dstBegin: " + dstBegin + ", count: " + (srcEnd - srcBegin) + ", array length: " + dst.length);
+        }
+        copyChars(srcBegin, srcEnd, dst, dstBegin);
+    }
+
+    /**
+     * Returns the hash code of this {@link CharacterBuffer}, that is the same of the {@link String} with the same characters.<br>
+     * The hash code is computed page by page and cached until the next change.
+     */
+    @Override
+    public final int hashCode() {
+        int h = hash;
+        if (h == 0 && size > 0) {
+            int last = size / pageSize;
+            for (int page = 0; page <= last; page++) {
+                char[] chars = page(page);
+                int length = page == last ? offset : pageSize;
+                for (int i = 0; i < length; i++) {
+                    h = 31 * h + chars[i];
+                }
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Returns the index within this {@link CharacterBuffer} of the first occurrence of the specified {@link CharSequence}.<br>
+     * <b>Hint:</b> This search is performed from left to right.
+     *
+     * @param text
+     *            the {@link CharSequence} to search for.
+     * 
+     * @return the index of the first occurrence of the specified {@link CharSequence}<br>
+     *         {@code -1} if there is no such occurrence.
+     */
+    public final int indexOf(CharSequence text) {
+        return indexOf(text, 0);
+    }
+
+    /**
+     * Returns the index within this {@link CharacterBuffer} of the first occurrence of the specified {@link CharSequence}, starting at the specified index.<br>
+     * <b>Hint:</b> This search is performed from left to right.
+     *
+     * @param text
+     *            the {@link CharSequence} to search for.
+     * 
+     * @param fromIndex
+     *            the index from which to start the search.
+     * 
+     * @return the index of the first occurrence of the specified {@link CharSequence}<br>
+     *         {@code -1} if there is no such occurrence.
+     */
+    public final int indexOf(CharSequence text, int fromIndex) {
+        if (text.length() == 0) {
+            return -1;
+        }
+        int limit = this.length() - text.length();
+        NEXT: for (int i = fromIndex; i <= limit; i++) {
+            for (int j = 0; j < text.length(); j++) {
+                if (text.charAt(j) != this.charAt(i + j)) {
+                    continue NEXT;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Inserts the {@link String} representation of the {@code boolean} argument to this {@link CharacterBuffer} at the specified index.
+     * 
+     * @param index
+     *            position at which to insert.
+     * 
+     * @param value
+     *            the {@code boolean} to insert.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer insert(int index, boolean value) {
+        return insert(index, String.valueOf(value));
+    }
+
+    /**
+     * Inserts the {@link String} representation of the {@code char} argument to this {@link CharacterBuffer} at the specified index.
+     * 
+     * @param index
+     *            position at which to insert.
+     * 
+     * @param value
+     *            the {@code char} to insert.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer insert(int index, char value) {
+        return insert(index, String.valueOf(value));
+    }
+
+    /**
+     * Inserts the {@link String} representation of the {@code char} array argument to this {@link CharacterBuffer} at the specified index.
+     * 
+     * @param index
+     *            position at which to insert.
+     * 
+     * @param characters
+     *            the {@code char} array to insert.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer insert(int index, char[] characters) {
+        return insert(index, String.valueOf(characters));
+    }
+
+    /**
+     * inserts the {@link String} representation of a subarray of the {@code char} array argument to this {@link CharacterBuffer} at the specified index.
+     * 
+     * 
+     * @param index
+     *            position at which to insert.
+     * 
+     * @param characters
+     *            the {@code char} array to insert.
+     * 
+     * @param offset
+     *            the index of the first {@code char} to insert.
+     * 
+     * @param length
+     *            the number of {@code char}s to insert.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer insert(int index, char[] characters, int offset, int length) {
+        return insert(index, String.valueOf(characters, offset, length));
+    }
+
+    /**
+     * Inserts the specified {@code CharSequence} to this {@link CharacterBuffer} at the specified index.
+     * 
+     * @param index
+     *            position at which to insert.
+     * 
+     * @param text
+     *            the {@code CharSequence} to insert.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer insert(int index, CharSequence text) {
+        int remaining = text.length();
+        if (remaining < 1) {
+            return this;
+        }
+        changed(index);
+        if (stats != null) {
+            stats.insertMoved(size - index);
+        }
+        CharacterBuffer sufix = subSequence(index, size);
+        page = index / pageSize;
+        offset = index % pageSize;
+        size = index;
+        writablePage(page);
+        append(text);
+        append(sufix);
+        return this;
+    }
+
+    /**
+     * Inserts a subsequence of the specified {@code CharSequence} to this {@link CharacterBuffer} at the specified index.
+     * 
+     * @param index
+     *            position at which to insert.
+     * 
+     * @param text
+     *            the {@code CharSequence} to insert.
+     * 
+     * @param start
+     *            the starting index of the subsequence to insert.
+     * 
+     * @param end
+     *            the end index of the subsequence to insert.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer insert(int index, CharSequence text, int start, int end) {
+        return insert(index, text.subSequence(start, end));
+    }
+
+    /**
+     * Inserts the {@link String} representation of the {@code dpuble} argument to this {@link CharacterBuffer} at the specified index.
+     * 
+     * @param index
+     *            position at which to insert.
+     * 
+     * @param value
+     *            the {@code double} to insert.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer insert(int index, double value) {
+        return insert(index, String.valueOf(value));
+    }
+
+    /**
+     * Inserts the {@link String} representation of the {@code float} argument to this {@link CharacterBuffer} at the specified index.
+     * 
+     * @param index
+     *            position at which to insert.
+     * 
+     * @param value
+     *            the {@code float} to insert.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer insert(int index, float value) {
+        return insert(index, String.valueOf(value));
+    }
+
+    /**
+     * Inserts the {@link String} representation of the {@code int} argument to this {@link CharacterBuffer} at the specified index.
+     * 
+     * @param index
+     *            position at which to insert.
+     * 
+     * @param value
+     *            the {@code int} to insert.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer insert(int index, int value) {
+        return insert(index, String.valueOf(value));
+    }
+
+    /**
+     * Inserts the {@link String} representation of the {@code long} argument to this {@link CharacterBuffer} at the specified index.
+     * 
+     * @param index
+     *            position at which to insert.
+     * 
+     * @param value
+     *            the {@code long} to insert.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer insert(int index, long value) {
+        return insert(index, String.valueOf(value));
+    }
+
+    /**
+     * Inserts the {@link String} representation of the {@link Object} argument to this {@link CharacterBuffer} at the specified index.
+     * 
+     * @param index
+     *            position at which to insert.
+     * 
+     * @param object
+     *            the {@link Object} to insert.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer insert(int index, Object object) {
+        return insert(index, String.valueOf(object));
+    }
+
+    /**
+     * Returns the index within this {@link CharacterBuffer} of the last occurrence of the specified {@link CharSequence}.<br>
+     * The last occurrence of the empty {@link String} {@code ""} is considered to occur at the index value {@code this.length()}.<br>
+     * <b>Hint:</b> This search is performed from right to left.
+     *
+     * 
+     * @param text
+     *            the {@link CharSequence} to search for.
+     * 
+     * @return the index of the last occurrence of the specified {@link CharSequence}<br>
+     *         {@code -1} if there is no such occurrence.
+     */
+    public final int lastIndexOf(CharSequence text) {
+        return lastIndexOf(text, size);
+    }
+
+    /**
+     * Returns the index within this {@link CharacterBuffer} of the last occurrence of the specified {@link CharSequence}.<br>
+     * The last occurrence of the empty {@link String} {@code ""} is considered to occur at the index value {@code this.length()}.<br>
+     * <b>Hint:</b> This search is performed from right to left starting at the specified index.
+     *
+     * 
+     * @param text
+     *            the {@link CharSequence} to search for.
+     * @param fromIndex
+     *            the index to start the search from.
+     * 
+     * @return the index of the last occurrence of the specified {@link CharSequence}<br>
+     *         {@code -1} if there is no such occurrence.
+     */
+    public final int lastIndexOf(CharSequence text, int fromIndex) {
+        if (text.length() == 0) {
+            return size;
+        }
+        NEXT: for (int i = fromIndex; i >= text.length(); i--) {
+            for (int j = 0; j < text.length(); j++) {
+                if (text.charAt(j) != this.charAt(i + j)) {
+                    continue NEXT;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the length (character count) of this {@link CharacterBuffer}.
+     *
+     * @return the length of the sequence of characters currently represented by this object.
+     */
+    @Override
+    public final int length() {
+        return size;
+    }
+
+    /**
+     * Returns the specified line of this {@link CharacterBuffer}, without its line terminator, as a zero-copy {@link View}.<br>
+     * The {@link View} shares the memory pages of this {@link CharacterBuffer}, so it must not be used after a later change.
+     * 
+     * @param line
+     *            the zero based line number.
+     * 
+     * @return a {@link View} of the specified line.
+     * 
+     * @see #lineCount()
+     */
+    public final View line(int line) {
+        int start = lineStart(line);
+        int end = size;
+        if (line + 1 < lineCount) {
+            end = lineStarts[line + 1] - 1;
+            if (end > start && charAt(end) == '\n' && charAt(end - 1) == '\r') {
+                --end;
+            }
+        }
+        return new View(this, start, end);
+    }
+
+    /**
+     * Returns the number of lines of this {@link CharacterBuffer}, separated by {@code "\n"}, {@code "\r"} or {@code "\r\n"}.<br>
+     * The line index is built on the first call and then only the characters appended or changed since the previous call are scanned again.<br>
+     * <b>Hint:</b> Unlike {@link #lines()}, a trailing line terminator starts an empty last line, so an empty {@link CharacterBuffer} has one line.
+     * 
+     * @return the number of lines of this {@link CharacterBuffer}.
+     */
+    public final int lineCount() {
+        indexLines();
+        return lineCount;
+    }
+
+    /**
+     * Returns the number of the line that contains the character at the specified index, with a binary search on the line index.
+     * 
+     * @param index
+     *            the index of the character, from {@code 0} to {@code length()} inclusive.
+     * 
+     * @return the zero based number of the line that contains the specified index.
+     */
+    public final int lineOf(int index) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + size);
+        }
+        indexLines();
+        int line = Arrays.binarySearch(lineStarts, 0, lineCount, index);
+        return line < 0 ? -line - 2 : line;
+    }
+
+    /**
+     * Returns the index of the first character of the specified line.
+     * 
+     * @param line
+     *            the zero based line number.
+     * 
+     * @return the index where the specified line starts.
+     * 
+     * @see #lineCount()
+     */
+    public final int lineStart(int line) {
+        indexLines();
+        if (line < 0 || line >= lineCount) {
+            throw new IndexOutOfBoundsException("line: " + line + ", lines: " + lineCount);
+        }
+        return lineStarts[line];
+    }
+
+    /**
+     * Returns a stream of the lines of this {@link CharacterBuffer}, separated by {@code "\n"}, {@code "\r"} or {@code "\r\n"}, the same way Java 11's {@code String.lines()} does.<br>
+     * Each line is a zero-copy {@link View} that shares the memory pages of this {@link CharacterBuffer}, and a parallel stream splits the work on memory page boundaries.<br>
+     * <b>Hint:</b> When the cold memory pages are {@link Amount#compress(int) compressed} or {@link Amount#maxHeap(int) spilled}, the stream is never split.
+     * 
+     * @return a {@link Stream} of the lines of this {@link CharacterBuffer}.
+     */
+    public final Stream<CharSequence> lines() {
+        return StreamSupport.stream(new LineSpliterator(0, size), false);
+    }
+
+    /**
+     * Finds the index of the first mismatching character between this {@link CharacterBuffer} and the {@link CharSequence} argument.<br>
+     * The memory pages are compared slice by slice, without creating any {@link String}.
+     * 
+     * @param text
+     *            the {@link CharSequence} to compare against.
+     * 
+     * @return the index of the first mismatching character.<br>
+     *         The length of the shorter sequence if it is a prefix of the longer one.<br>
+     *         {@code -1} if both sequences are equal.
+     */
+    public final int mismatch(CharSequence text) {
+        int length = Math.min(size, text.length());
+        int index = mismatch(text, length);
+        return index == length && size == text.length() ? -1 : index;
+    }
+
+    /**
+     * Finds the index of the first mismatching character between this {@link CharacterBuffer} and the specified range of the {@code char} array argument.<br>
+     * The memory pages are compared slice by slice against the array, without creating any {@link String}.
+     * 
+     * @param chars
+     *            the {@code char} array to compare against.
+     * 
+     * @param offset
+     *            the index of the first {@code char} of the range.
+     * 
+     * @param length
+     *            the amount of {@code char}s of the range.
+     * 
+     * @return the index of the first mismatching character.<br>
+     *         The length of the shorter sequence if it is a prefix of the longer one.<br>
+     *         {@code -1} if both sequences are equal.
+     */
+    public final int mismatch(char[] chars, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > chars.length - length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + chars.length);
+        }
+        int common = Math.min(size, length);
+        int index = mismatch(0, chars, offset, common);
+        return index == common && size == length ? -1 : index;
+    }
+
+    /**
+     * Appends the content of the file located by the {@link Path} argument to this {@link CharacterBuffer}, decoded with the specified {@link Charset}.<br>
+     * The memory page directory is pre-sized from the file length and the characters are decoded straight into the memory pages.<br>
+     * Malformed and unmappable {@code byte}s are replaced, the same way {@link String#String(byte[], Charset)} does.
+     * 
+     * @param path
+     *            the {@link Path} of the file to read from.
+     * 
+     * @param charset
+     *            the {@link Charset} used to decode the {@code byte}s.
+     * 
+     * @return a reference to this object.
+     * 
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public final CharacterBuffer readFrom(Path path, Charset charset) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            CharsetDecoder decoder = decoder(charset);
+            long chars = size + (long) Math.ceil(channel.size() * decoder.averageCharsPerByte());
+            ensureDirectory((int) Math.min(Integer.MAX_VALUE, chars) / pageSize + 1);
+            return readFrom(channel, decoder);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Appends the content of the {@link ReadableByteChannel} argument to this {@link CharacterBuffer}, decoded with the specified {@link Charset}.<br>
+     * The characters are decoded straight into the memory pages, until the end of the stream is reached.<br>
+     * Malformed and unmappable {@code byte}s are replaced, the same way {@link String#String(byte[], Charset)} does.
+     * 
+     * @param channel
+     *            the {@link ReadableByteChannel} to read from.
+     * 
+     * @param charset
+     *            the {@link Charset} used to decode the {@code byte}s.
+     * 
+     * @return a reference to this object.
+     * 
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public final CharacterBuffer readFrom(ReadableByteChannel channel, Charset charset) throws IOException {
+        return readFrom(channel, decoder(charset));
+    }
+
+    /**
+     * Renders the {@link Template} with the specified values, the literal segments are copied straight into the memory pages,
+     * and the values are appended without temporary {@link String}s when they are {@link Integer}s, {@link Long}s, {@link Short}s, {@link Byte}s, {@link Character}s or {@link CharSequence}s.
+     * 
+     * @param template
+     *            the parsed template.
+     * 
+     * @param values
+     *            the values of the placeholders, in the order of {@link Template#names()}.
+     * 
+     * @return a reference to this object.
+     * 
+     * @throws IllegalArgumentException
+     *             if the amount of values differs from the amount of placeholder names.
+     */
+    public final CharacterBuffer render(Template template, Object... values) {
+        if (values.length != template.names.length) {
+            throw new IllegalArgumentException("expected " + template.names.length + " values " + template.names() + ", but got " + values.length);
+        }
+        int[] slots = template.slots;
+        char[][] literals = template.literals;
+        for (int i = 0; i < slots.length; i++) {
+            append(literals[i], 0, literals[i].length);
+            appendValue(values[slots[i]]);
+        }
+        return append(literals[slots.length], 0, literals[slots.length].length);
+    }
+
+    /**
+     * Renders the {@link Template} with the values of the specified {@link Map}, see {@link #render(Template, Object...)}.
+     * 
+     * @param template
+     *            the parsed template.
+     * 
+     * @param values
+     *            the values of the placeholders, mapped by their names.
+     * 
+     * @return a reference to this object.
+     * 
+     * @throws IllegalArgumentException
+     *             if a placeholder name is not mapped.
+     */
+    public final CharacterBuffer render(Template template, Map<String, ?> values) {
+        Object[] slotValues = new Object[template.names.length];
+        for (int i = 0; i < slotValues.length; i++) {
+            String name = template.names[i];
+            if ((slotValues[i] = values.get(name)) == null && !values.containsKey(name)) {
+                throw new IllegalArgumentException("no value for placeholder " + name);
+            }
+        }
+        return render(template, slotValues);
+    }
+
+    /**
+     * Removes all the characters from this {@link CharacterBuffer}, but unlike {@link #deleteAll()} the allocated memory pages are kept to be reused.<br>
+     * <b>Hint:</b> This suits buffers that are reused, like one per connection, because no memory page is allocated again between requests.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer reset() {
+        return setLength(0);
+    }
+
+    /**
+     * Reverses the characters of this {@link CharacterBuffer} in place, surrogate pairs are kept in their original order,
+     * the same way {@link StringBuilder#reverse()} does.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer reverse() {
+        changed();
+        boolean surrogates = false;
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            char left = charAt(i);
+            char right = charAt(j);
+            surrogates |= Character.isSurrogate(left) || Character.isSurrogate(right);
+            // each page is fetched right before its write, so that loading a cold page can not evict a page that is about to be written
+            writablePage(i / pageSize)[i % pageSize] = right;
+            writablePage(j / pageSize)[j % pageSize] = left;
+        }
+        if (surrogates) {
+            for (int i = 0; i < size - 1; i++) {
+                char low = charAt(i);
+                if (Character.isLowSurrogate(low)) {
+                    char high = charAt(i + 1);
+                    if (Character.isHighSurrogate(high)) {
+                        writablePage(i / pageSize)[i % pageSize] = high;
+                        writablePage(++i / pageSize)[i % pageSize] = low;
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Sets the {@code char} at the specified index of this {@link CharacterBuffer}.
+     * 
+     * @param index
+     *            the index of the {@code char} to modify.
+     * 
+     * @param value
+     *            the new {@code char}.
+     */
+    public final void setCharAt(int index, char value) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + size);
+        }
+        changed(index);
+        writablePage(index / pageSize)[index % pageSize] = value;
+    }
+
+    /**
+     * Sets the length of this {@link CharacterBuffer}.<br>
+     * If the new length is shorter, the characters after it are discarded but the memory pages are kept to be reused, {@link #trimToSize()} releases them,
+     * if it is longer, the null character {@code '\u0000'} is appended until the new length is reached, the same way {@link StringBuilder#setLength(int)} does.
+     * 
+     * @param length
+     *            the new length.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer setLength(int length) {
+        if (length < 0) {
+            throw new IndexOutOfBoundsException("length: " + length);
+        }
+        if (length < size) {
+            changed(length);
+            if (stats != null) {
+                stats.sized(size);
+            }
+            size = length;
+            page = length / pageSize;
+            offset = length % pageSize;
+            writablePage(page);
+            truncated();
+        }
+        while (size < length) {
+            char[] chars = memory[page];
+            int count = Math.min(chars.length - offset, length - size);
+            Arrays.fill(chars, offset, offset + count, '\u0000');
+            advance(count);
+        }
+        return this;
+    }
+
+    /**
+     * Splits this {@link CharacterBuffer} around the specified delimiter, lazily and without copying, see {@link Splitter}.<br>
+     * The empty tokens are kept, so {@code n} delimiters always yield {@code n + 1} tokens, including the empty token after a trailing delimiter.
+     * 
+     * @param delimiter
+     *            the delimiter of the tokens.
+     * 
+     * @return a {@link Splitter} of the tokens.
+     */
+    public final Splitter split(char delimiter) {
+        return new Splitter(value -> value == delimiter, null, false, false);
+    }
+
+    /**
+     * Splits this {@link CharacterBuffer} around the specified delimiter, lazily and without copying, see {@link Splitter}.<br>
+     * The empty tokens are kept, so {@code n} delimiters always yield {@code n + 1} tokens, including the empty token after a trailing delimiter.
+     * 
+     * @param delimiter
+     *            the delimiter of the tokens.
+     * 
+     * @return a {@link Splitter} of the tokens.
+     * 
+     * @throws IllegalArgumentException
+     *             if the delimiter is empty.
+     */
+    public final Splitter split(CharSequence delimiter) {
+        if (delimiter.length() == 0) {
+            throw new IllegalArgumentException("empty delimiter");
+        }
+        if (delimiter.length() == 1) {
+            return split(delimiter.charAt(0));
+        }
+        return new Splitter(null, delimiter.toString(), false, false);
+    }
+
+    /**
+     * Returns a new {@link CharacterBuffer} that is a subsequence of this character sequence.
+     * 
+     * @param start
+     *            the start index, inclusive.
+     * 
+     * @param end
+     *            the end index, exclusive.
      * 
+     * @return a new {@link CharacterBuffer} with the specified subsequence.
+     */
+    @Override
+    public final CharacterBuffer subSequence(int start, int end) {
+        CharacterBuffer subSequence = CharacterBuffer.with(pageSize).chars();
+        int length = end - start;
+        for (int i = 0; i < length; i++) {
+            subSequence.append(charAt(start + i));
+        }
+        return subSequence;
+    }
+
+    /**
+     * Returns a new {@link String} that contains a subsequence of characters currently contained in this {@link CharacterBuffer}.<br>
+     * The substring begins at the specified index and extends to the end of this {@link CharacterBuffer}.
+     *
      * @param start
      *            The beginning index, inclusive.
      * 
+     * @return The new {@link String}.
+     */
+    public final String substring(int start) {
+        return substring(start, size);
+    }
+
+    /**
+     * Returns a new {@link String} that contains a subsequence of characters currently contained in this {@link CharacterBuffer}.<br>
+     * The substring begins at the specified {@code start} and extends to the character at index {@code end - 1}.
+     *
+     * @param start
+     *            The beginning index, inclusive.
      * @param end
      *            The ending index, exclusive.
      * 
+     * @return The new {@link String}.
+     */
+    public final String substring(int start, int end) {
+        return subSequence(start, end).toString();
+    }
+
+    /**
+     * Converts all the characters of this {@link CharacterBuffer} to lower case in place, see {@link #transform(CharUnaryOperator)}.<br>
+     * <b>Hint:</b> The characters are converted one by one with {@link Character#toLowerCase(char)}, so the length never changes.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer toLowerCase() {
+        return transform(Character::toLowerCase);
+    }
+
+    /**
+     * Returns a {@link String} representing the data in this sequence.<br>
+     * A new {@link String} object is allocated and initialized to contain the character sequence currently represented by this object.<br>
+     * This {@link String} is then returned.<br>
+     * Subsequent changes to this sequence do not affect the contents of the {@link String}.
+     *
+     * @return a {@link String} representation of this {@link CharacterBuffer}.
+     */
+    @Override
+    public final String toString() {
+        String string = (String) dereference(toStringCache);
+        if (string != null) {
+            ++toStringCacheHits;
+            if (stats != null) {
+                stats.toStringCacheHit();
+            }
+            return string;
+        }
+        ++toStringCacheMisses;
+        if (stats != null) {
+            stats.toStringCacheMiss();
+            stats.sized(size);
+        }
+        boolean cacheable = cachePolicy != CachePolicy.NONE && size <= cacheLimit;
+        // after appending, only the new characters are copied next to the materialized prefix, that is the previous String or its growable copy
+        Object prefix = dereference(prefixCache);
+        int start = prefix != null ? prefixLength : 0;
+        char[] chars;
+        if (prefix instanceof char[] && ((char[]) prefix).length >= size) {
+            chars = (char[]) prefix;
+        } else {
+            // the room to grow is only reserved once the buffer was seen growing after a toString(), so a buffer materialized once keeps only its String
+            chars = new char[cacheable && prefix != null ? (int) Math.max(size, Math.min(MAX_ARRAY_SIZE, size + (long) (size >> 1))) : size];
+            if (prefix instanceof String) {
+                ((String) prefix).getChars(0, start, chars, 0);
+            } else if (prefix != null) {
+                System.arraycopy((char[]) prefix, 0, chars, 0, start);
+            }
+        }
+        copyChars(start, size, chars, start);
+        string = new String(chars, 0, size);
+        if (cacheable) {
+            toStringCache = reference(string);
+            prefixCache = prefix != null ? reference(chars) : null;
+            prefixLength = size;
+        }
+        return string;
+    }
+
+    /**
+     * Returns how many times {@link #toString()} returned the cached {@link String}.
+     * 
+     * @return the amount of {@link #toString()} cache hits.
+     */
+    public final long toStringCacheHits() {
+        return toStringCacheHits;
+    }
+
+    /**
+     * Returns how many times {@link #toString()} had to build a new {@link String}, even if it could reuse the materialized prefix.
+     * 
+     * @return the amount of {@link #toString()} cache misses.
+     */
+    public final long toStringCacheMisses() {
+        return toStringCacheMisses;
+    }
+
+    /**
+     * Converts all the characters of this {@link CharacterBuffer} to upper case in place, see {@link #transform(CharUnaryOperator)}.<br>
+     * <b>Hint:</b> The characters are converted one by one with {@link Character#toUpperCase(char)}, so the length never changes,
+     * unlike {@link String#toUpperCase()} that maps {@code '\u00DF'} to {@code "SS"}.
+     * 
+     * @return a reference to this object.
+     */
+    public final CharacterBuffer toUpperCase() {
+        return transform(Character::toUpperCase);
+    }
+
+    /**
+     * Splits this {@link CharacterBuffer} into the runs of characters that do not match the {@link CharPredicate} argument, lazily and without copying, see {@link Splitter}.<br>
+     * Unlike {@link #split(char)}, the empty tokens are skipped, so consecutive delimiters are the same as one, the same way {@link java.util.StringTokenizer} does.
+     * 
+     * <p>
+     * <b>Example:</b>
+     * </p>
+     * 
+     * <pre>
+     * for (CharSequence word : buffer.tokenize(Character::isWhitespace).reuseView()) {
+     *     ...
+     * }
+     * </pre>
+     * 
+     * @param delimiter
+     *            the {@link CharPredicate} that matches the delimiters.
+     * 
+     * @return a {@link Splitter} of the tokens.
+     */
+    public final Splitter tokenize(CharPredicate delimiter) {
+        return new Splitter(delimiter, null, true, false);
+    }
+
+    /**
+     * Replaces each character of this {@link CharacterBuffer} by the result of the {@link CharUnaryOperator} argument, in place, page by page.<br>
+     * Large buffers have their memory pages transformed in parallel.<br>
+     * <b>Hint:</b> When the cold memory pages are {@link Amount#compress(int) compressed} or {@link Amount#maxHeap(int) spilled}, the pages are transformed one at a time.
+     * 
+     * @param operator
+     *            the {@link CharUnaryOperator} applied to each character.
+     * 
      * @return a reference to this object.
      */
-    public final CharacterBuffer delete(int start, int end) {
-        if (start == end) {
+    public final CharacterBuffer transform(CharUnaryOperator operator) {
+        changed();
+        int count = (int) ((size + (long) pageSize - 1) / pageSize);
+        if (sharedPages != null) {
+            // the shared memory pages are copied beforehand, so that the pages transformed in parallel do not update the BitSet concurrently
+            for (int i = sharedPages.nextSetBit(0); i >= 0 && i < count; i = sharedPages.nextSetBit(i + 1)) {
+                writablePage(i);
+            }
+        }
+        IntStream pages = IntStream.range(0, count);
+        if (hotPages == 0 && size >= PARALLEL_THRESHOLD) {
+            pages = pages.parallel();
+        }
+        pages.forEach(index -> {
+            char[] chars = writablePage(index);
+            int length = Math.min(pageSize, size - index * pageSize);
+            for (int i = 0; i < length; i++) {
+                chars[i] = operator.apply(chars[i]);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Releases the memory pages after the write position and shrinks the memory page directory to the pages in use.<br>
+     * If the first memory page is {@link Amount#adaptive(int) adaptive} and all the characters fit in it, it is shrunk too, and it doubles again when it gets full.
+     */
+    public final void trimToSize() {
+        for (int i = page + 1; i < memory.length; i++) {
+            release(i);
+        }
+        if (memory.length > page + 1) {
+            memory = Arrays.copyOf(memory, page + 1);
+        }
+        if (packed != null && packed.length > page + 1) {
+            packed = Arrays.copyOf(packed, page + 1);
+        }
+        // a first memory page that is not adaptive keeps the page size, otherwise it would double again on the next appends
+        if (page == 0 && firstPageSize > 0 && memory[0].length > offset + 1) {
+            memory[0] = Arrays.copyOf(memory[0], Math.max(offset + 1, firstPageSize));
+        }
+    }
+
+    /**
+     * Writes the content of this {@link CharacterBuffer} to the {@link OutputStream} argument, encoded with the specified {@link Charset}.<br>
+     * The memory pages are encoded one at a time, so no full size {@link String} or {@code byte} array copy is created.<br>
+     * Malformed and unmappable characters are replaced, the same way {@link String#getBytes(Charset)} does.
+     * 
+     * @param out
+     *            the {@link OutputStream} to write to.
+     * 
+     * @param charset
+     *            the {@link Charset} used to encode the characters.
+     * 
+     * @return the number of {@code byte}s written.
+     * 
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public final long writeTo(OutputStream out, Charset charset) throws IOException {
+        return writeTo(Channels.newChannel(out), charset);
+    }
+
+    /**
+     * Writes the content of this {@link CharacterBuffer} to the {@link WritableByteChannel} argument, encoded with the specified {@link Charset}.<br>
+     * The memory pages are encoded one at a time, so no full size {@link String} or {@code byte} array copy is created.<br>
+     * Malformed and unmappable characters are replaced, the same way {@link String#getBytes(Charset)} does.
+     * 
+     * @param channel
+     *            the {@link WritableByteChannel} to write to.
+     * 
+     * @param charset
+     *            the {@link Charset} used to encode the characters.
+     * 
+     * @return the number of {@code byte}s written.
+     * 
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public final long writeTo(WritableByteChannel channel, Charset charset) throws IOException {
+        CharsetEncoder encoder = encoder(charset);
+        ByteBuffer bytes = encoderOutput;
+        long written = 0;
+        char[] pending = new char[2];
+        boolean hasPending = false;
+        int last = size / pageSize;
+        for (int page = 0; page <= last; page++) {
+            int length = page == last ? offset : pageSize;
+            CharBuffer chars = CharBuffer.wrap(page(page), 0, length);
+            while (hasPending && chars.hasRemaining()) {
+                // a surrogate pair was split by the page boundary
+                pending[1] = chars.get();
+                CharBuffer pair = CharBuffer.wrap(pending, 0, 2);
+                written += encode(encoder, pair, bytes, channel, false);
+                if (hasPending = pair.hasRemaining()) {
+                    pending[0] = pair.get();
+                }
+            }
+            written += encode(encoder, chars, bytes, channel, false);
+            if (chars.hasRemaining()) {
+                pending[0] = chars.get();
+                hasPending = true;
+            }
+        }
+        written += encode(encoder, CharBuffer.wrap(pending, 0, hasPending ? 1 : 0), bytes, channel, true);
+        for (CoderResult result = encoder.flush(bytes); result.isOverflow(); result = encoder.flush(bytes)) {
+            written += drain(bytes, channel);
+        }
+        written += drain(bytes, channel);
+        return written;
+    }
+
+    /**
+     * Advances the write position after {@code length} characters were written straight into the current memory page.
+     */
+    private final void advance(int length) {
+        if (length > 0) {
+            appended();
+            size += length;
+            if ((offset += length) == memory[page].length) {
+                pageFull();
+            }
+        }
+    }
+
+    /**
+     * Allocates the first memory page for the character sequence storage.
+     */
+    private final void allocate() {
+        memory = new char[1][firstPageSize > 0 ? firstPageSize : pageSize];
+        sharedPages = null;
+        if (stats != null) {
+            stats.pageAllocated();
+        }
+        if (hotPages > 0) {
+            packed = new byte[1][];
+            spilled = new BitSet();
+            resident = new LinkedHashSet<Integer>();
+        }
+    }
+
+    /**
+     * Allocates the next memory page for the character sequence storage.
+     */
+    private final void allocateNext() {
+        if (++page == memory.length) {
+            char[][] moreMemory = new char[page + 1][];
+            System.arraycopy(memory, 0, moreMemory, 0, page);
+            memory = moreMemory;
+            if (stats != null) {
+                stats.directoryGrown(page);
+            }
+        }
+        if (memory[page] == null || isShared(page)) {
+            // a memory page shared with a frozen CharacterText is never reused, since its characters would be overwritten
+            memory[page] = new char[pageSize];
+            if (sharedPages != null) {
+                sharedPages.clear(page);
+            }
+            if (stats != null) {
+                stats.pageAllocated();
+                stats.sized((long) page * pageSize);
+            }
+        }
+        if (hotPages > 0) {
+            // the new write page may still have a cold copy of a content that is about to be overwritten
+            discardColdCopy(page);
+            resident.remove(page);
+            resident.remove(page - 1);
+            resident.add(page - 1);
+            recentPage = page - 1;
+            evictColdPages();
+        }
+    }
+
+    /**
+     * Copies the characters from {@code start} to {@code end} of the {@code CharSequence} straight into the memory pages, in bulk for {@link String}s, {@link StringBuilder}s, {@link CharacterBuffer}s and {@link CharacterText}s.
+     */
+    private final CharacterBuffer appendChars(CharSequence text, int start, int end) {
+        if (start >= end) {
             return this;
         }
+        appended();
+        while (start < end) {
+            char[] chars = memory[page];
+            int count = Math.min(chars.length - offset, end - start);
+            if (text instanceof String) {
+                ((String) text).getChars(start, start + count, chars, offset);
+            } else if (text instanceof StringBuilder) {
+                ((StringBuilder) text).getChars(start, start + count, chars, offset);
+            } else if (text instanceof CharacterBuffer) {
+                ((CharacterBuffer) text).copyChars(start, start + count, chars, offset);
+            } else if (text instanceof CharacterText) {
+                ((CharacterText) text).getChars(start, start + count, chars, offset);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    chars[offset + i] = text.charAt(start + i);
+                }
+            }
+            start += count;
+            size += count;
+            if ((offset += count) == chars.length) {
+                pageFull();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends the decimal digits of the {@code long} argument, without creating a {@link String}.
+     */
+    private final CharacterBuffer appendDigits(long value) {
+        char[] digits = this.digits;
+        if (digits == null) {
+            digits = this.digits = new char[20];
+        }
+        int position = digits.length;
+        boolean negative = value < 0;
+        if (!negative) {
+            // the digits are computed from the negative value, so that Long.MIN_VALUE needs no special case
+            value = -value;
+        }
+        do {
+            digits[--position] = (char) ('0' - (value % 10));
+            value /= 10;
+        } while (value != 0);
+        if (negative) {
+            digits[--position] = '-';
+        }
+        return append(digits, position, digits.length - position);
+    }
+
+    /**
+     * Appends the {@link String} representation of the value, the numbers of the integral wrapper types are appended without creating a {@link String}.
+     */
+    private final void appendValue(Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            appendDigits(((Number) value).longValue());
+        } else if (value instanceof CharSequence) {
+            append((CharSequence) value);
+        } else if (value instanceof Character) {
+            append(((Character) value).charValue());
+        } else {
+            append(String.valueOf(value));
+        }
+    }
+
+    /**
+     * Appends the argument of a plain {@code %s}, {@code %d}, {@code %c} or {@code %b} format specifier, the same way {@link Formatter} does.
+     * 
+     * @return {@code false} if the argument must be formatted by a {@link Formatter}.
+     */
+    private final boolean appendFormatted(char conversion, Object value, Locale locale) {
+        switch (conversion) {
+            case 's':
+                if (value instanceof Formattable) {
+                    return false;
+                }
+                appendValue(value);
+                return true;
+            case 'd':
+                if ((value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) && hasAsciiDigits(locale)) {
+                    appendDigits(((Number) value).longValue());
+                    return true;
+                }
+                return false;
+            case 'c':
+                if (value == null || value instanceof Character) {
+                    append(value == null ? "null" : (Character) value);
+                    return true;
+                }
+                return false;
+            case 'b':
+                append(value == null ? "false" : value instanceof Boolean ? value.toString() : "true");
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Drops the cached values that do not hold anymore after characters were appended, the materialized prefix is still valid.
+     */
+    private final void appended() {
+        if (prefixCache == null) {
+            // the String is the prefix of the next one
+            prefixCache = toStringCache;
+        }
         toStringCache = null;
-        int last = end > size ? size - 1 : end - 1;
-        int destinyPage = start / pageSize;
-        int destinyOffset = start % pageSize;
+        hash = 0;
+    }
 
-        int lastPage = last / pageSize;
-        int lastOffset = last % pageSize;
+    /**
+     * Drops all the cached values after the content was changed.
+     */
+    private final void changed() {
+        changed(0);
+    }
 
-        int remaining = size - last - 1;
-        int sourcePage = lastPage;
-        int sourceOffset = (lastOffset + pageSize + 1) % pageSize;
-        while (remaining > 0) {
-            int length = Math.min(pageSize - sourceOffset, pageSize - destinyOffset);
-            length = Math.min(length, pageSize - offset);
-            System.arraycopy(memory[sourcePage], sourceOffset, memory[destinyPage], destinyOffset, length);
-            if ((destinyOffset = (destinyOffset + pageSize + length) % pageSize) == 0) {
-                ++destinyPage;
+    /**
+     * Drops all the cached values after the content was changed from the specified index on, the line index is kept up to that index.
+     */
+    private final void changed(int index) {
+        toStringCache = null;
+        prefixCache = null;
+        hash = 0;
+        if (lineStarts != null && index < indexedLength) {
+            while (lineCount > 1 && lineStarts[lineCount - 1] > index) {
+                --lineCount;
             }
-            if ((sourceOffset = (sourceOffset + pageSize + length) % pageSize) == 0) {
-                ++sourcePage;
+            if (index > 0 && lineStarts[lineCount - 1] != index && charAt(index - 1) == '\r') {
+                lineStarts[lineCount++] = index;
             }
-            remaining -= length;
+            indexedLength = index;
         }
-        size -= (last - start + 1);
-        page = size / pageSize;
-        offset = size % pageSize;
-        Arrays.fill(memory[page], destinyOffset, destinyOffset + (pageSize - destinyOffset), '\u0000');
-        for (int i = page + 1; i < memory.length; i++) {
-            memory[i] = null;
+    }
+
+    /**
+     * Closes the spill file once no memory page is spilled to it anymore, the file is deleted when it is closed.
+     */
+    private final void closeSpillFile() {
+        if (spillFile != null && spilled.isEmpty()) {
+            try {
+                spillFile.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                spillFile = null;
+            }
         }
-        return this;
     }
 
     /**
-     * Removes all the characters from this {@link CharacterBuffer}.
-     * 
-     * @return a reference to this object.
+     * Compares the memory pages of this and of the {@link CharacterBuffer} argument, that may have a different page size.
      */
-    public final CharacterBuffer deleteAll() {
-        allocate();
-        size = 0;
-        page = 0;
-        offset = 0;
-        return this;
+    private final boolean contentEquals(CharacterBuffer that) {
+        if (that.size != size) {
+            return false;
+        }
+        if (hash != 0 && that.hash != 0 && hash != that.hash) {
+            return false;
+        }
+        return mismatch(that, size) == size;
     }
 
     /**
-     * Removes the the {@code char} at the specified position in this {@link CharacterBuffer}.
-     * 
-     * @param index
-     *            Index of {@code char} to remove
-     * 
-     * @return a reference to this object.
+     * Copies the characters from {@code start}, inclusive, to {@code end}, exclusive, into the {@code char} array argument, page by page.
      */
-    public final CharacterBuffer deleteCharAt(int index) {
-        return delete(index, index + 1);
+    private final void copyChars(int start, int end, char[] destiny, int destinyOffset) {
+        while (start < end) {
+            int sourceOffset = start % pageSize;
+            int length = Math.min(pageSize - sourceOffset, end - start);
+            System.arraycopy(page(start / pageSize), sourceOffset, destiny, destinyOffset, length);
+            destinyOffset += length;
+            start += length;
+        }
     }
 
-    @Override
-    public final boolean equals(Object object) {
-        if (object == this) {
-            return true;
+    /**
+     * Replaces the full memory page at the specified index by the identical one interned by another buffer, if any,
+     * and marks it as shared, so that it is copied before it changes, see {@link Amount#deduplicate()}.
+     */
+    private final void deduplicate(int index) {
+        char[] chars = memory[index];
+        char[] interned = PAGES.intern(chars);
+        if (interned != chars) {
+            memory[index] = interned;
+            if (stats != null) {
+                stats.deduplicationHit(chars.length * 2L);
+            }
+        } else if (stats != null) {
+            stats.deduplicationMiss();
         }
-        if (object instanceof CharacterBuffer) {
-            return this.toString().equals(object.toString());
+        if (sharedPages == null) {
+            sharedPages = new BitSet();
         }
-        return false;
+        sharedPages.set(index);
     }
 
-    @Override
-    public final int hashCode() {
-        return toString().hashCode();
+    /**
+     * Decodes the {@link ByteBuffer} argument straight into the memory pages.
+     */
+    private final void decode(CharsetDecoder decoder, ByteBuffer bytes, boolean endOfInput) throws IOException {
+        boolean flushing = false;
+        for (;;) {
+            CharBuffer chars = CharBuffer.wrap(memory[page], offset, memory[page].length - offset);
+            CoderResult result = flushing ? decoder.flush(chars) : decoder.decode(bytes, chars, endOfInput);
+            boolean pageFull = chars.position() == chars.capacity();
+            advance(chars.position() - offset);
+            if (result.isUnderflow()) {
+                if (!endOfInput || flushing) {
+                    return;
+                }
+                flushing = true;
+                continue;
+            }
+            if (!result.isOverflow()) {
+                result.throwException();
+            }
+            if (!pageFull) {
+                // a surrogate pair does not fit in what is left of the current memory page
+                CharBuffer pair = CharBuffer.allocate(2);
+                if (flushing) {
+                    decoder.flush(pair);
+                } else {
+                    decoder.decode(bytes, pair, endOfInput);
+                }
+                pair.flip();
+                while (pair.hasRemaining()) {
+                    append(pair.get());
+                }
+            }
+        }
     }
 
     /**
-     * Returns the index within this {@link CharacterBuffer} of the first occurrence of the specified {@link CharSequence}.<br>
-     * <b>Hint:</b> This search is performed from left to right.
-     *
-     * @param text
-     *            the {@link CharSequence} to search for.
-     * 
-     * @return the index of the first occurrence of the specified {@link CharSequence}<br>
-     *         {@code -1} if there is no such occurrence.
+     * Returns the reusable {@link CharsetDecoder} for the {@link Charset} argument, already reset and with its input {@link ByteBuffer} cleared.
      */
-    public final int indexOf(CharSequence text) {
-        return indexOf(text, 0);
+    private final CharsetDecoder decoder(Charset charset) {
+        if (decoder == null || !decoder.charset().equals(charset)) {
+            decoder = charset.newDecoder()
+                             .onMalformedInput(CodingErrorAction.REPLACE)
+                             .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        if (decoderInput == null) {
+            decoderInput = ByteBuffer.allocate(8192);
+        }
+        decoderInput.clear();
+        return decoder.reset();
     }
 
     /**
-     * Returns the index within this {@link CharacterBuffer} of the first occurrence of the specified {@link CharSequence}, starting at the specified index.<br>
-     * <b>Hint:</b> This search is performed from left to right.
-     *
-     * @param text
-     *            the {@link CharSequence} to search for.
-     * 
-     * @param fromIndex
-     *            the index from which to start the search.
-     * 
-     * @return the index of the first occurrence of the specified {@link CharSequence}<br>
-     *         {@code -1} if there is no such occurrence.
+     * Discards the compressed or spilled copy of the memory page at the specified index, since its content is about to change.
      */
-    public final int indexOf(CharSequence text, int fromIndex) {
-        if (text.length() == 0) {
-            return -1;
+    private final void discardColdCopy(int index) {
+        if (index < packed.length) {
+            packed[index] = null;
         }
-        int limit = this.length() - text.length();
-        NEXT: for (int i = fromIndex; i <= limit; i++) {
-            for (int j = 0; j < text.length(); j++) {
-                if (text.charAt(j) != this.charAt(i + j)) {
-                    continue NEXT;
+        spilled.clear(index);
+    }
+
+    /**
+     * Writes the content of the {@link ByteBuffer} argument to the {@link WritableByteChannel} and clears it.
+     */
+    private final long drain(ByteBuffer bytes, WritableByteChannel channel) throws IOException {
+        bytes.flip();
+        int written = bytes.remaining();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+        return written;
+    }
+
+    /**
+     * Encodes the {@link CharBuffer} argument, writing the output {@link ByteBuffer} to the {@link WritableByteChannel} whenever it gets full.
+     */
+    private final long encode(CharsetEncoder encoder, CharBuffer chars, ByteBuffer bytes, WritableByteChannel channel, boolean endOfInput) throws IOException {
+        long written = 0;
+        for (CoderResult result = encoder.encode(chars, bytes, endOfInput); !result.isUnderflow(); result = encoder.encode(chars, bytes, endOfInput)) {
+            if (!result.isOverflow()) {
+                result.throwException();
+            }
+            written += drain(bytes, channel);
+        }
+        return written;
+    }
+
+    /**
+     * Returns the reusable {@link CharsetEncoder} for the {@link Charset} argument, already reset and with its output {@link ByteBuffer} cleared.
+     */
+    private final CharsetEncoder encoder(Charset charset) {
+        if (encoder == null || !encoder.charset().equals(charset)) {
+            encoder = charset.newEncoder()
+                             .onMalformedInput(CodingErrorAction.REPLACE)
+                             .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            int capacity = (int) Math.ceil(Math.max(2, Math.min(pageSize, 8192)) * encoder.maxBytesPerChar());
+            if (encoderOutput == null || encoderOutput.capacity() < capacity) {
+                encoderOutput = ByteBuffer.allocate(capacity);
+            }
+        }
+        encoderOutput.clear();
+        return encoder.reset();
+    }
+
+    /**
+     * Grows the memory page directory, without allocating the memory pages, so that it can hold at least the specified amount of pages.
+     */
+    private final void ensureDirectory(int pages) {
+        if (memory.length < pages) {
+            if (stats != null) {
+                stats.directoryGrown(memory.length);
+            }
+            memory = Arrays.copyOf(memory, pages);
+        }
+    }
+
+    /**
+     * Compresses or spills to disk the least recently used memory pages behind the write position, until only the hot ones remain in the heap.
+     */
+    private final void evictColdPages() {
+        Iterator<Integer> iterator = resident.iterator();
+        while (resident.size() > hotPages) {
+            int index = iterator.next();
+            iterator.remove();
+            if (index < page && memory[index] != null) {
+                if (maxHeap > 0) {
+                    if (!spilled.get(index)) {
+                        spill(index, pack(memory[index]));
+                        spilled.set(index);
+                    }
+                } else {
+                    if (index >= packed.length) {
+                        packed = Arrays.copyOf(packed, Math.max(index + 1, memory.length));
+                    }
+                    if (packed[index] == null) {
+                        packed[index] = pack(memory[index]);
+                    }
                 }
+                memory[index] = null;
             }
-            return i;
         }
-        return -1;
     }
 
     /**
-     * Inserts the {@link String} representation of the {@code boolean} argument to this {@link CharacterBuffer} at the specified index.
-     * 
-     * @param index
-     *            position at which to insert.
-     * 
-     * @param value
-     *            the {@code boolean} to insert.
-     * 
-     * @return a reference to this object.
+     * Returns the reusable {@link Formatter} that appends to this {@link CharacterBuffer} with the {@link Locale} argument.
      */
-    public final CharacterBuffer insert(int index, boolean value) {
-        return insert(index, String.valueOf(value));
+    private final Formatter formatter(Locale locale) {
+        if (formatter == null || !formatter.locale().equals(locale)) {
+            formatter = new Formatter(this, locale);
+        }
+        return formatter;
     }
 
     /**
-     * Inserts the {@link String} representation of the {@code char} argument to this {@link CharacterBuffer} at the specified index.
-     * 
-     * @param index
-     *            position at which to insert.
-     * 
-     * @param value
-     *            the {@code char} to insert.
-     * 
-     * @return a reference to this object.
+     * Builds the line index on the first call, then scans only the characters that were not indexed yet.
      */
-    public final CharacterBuffer insert(int index, char value) {
-        return insert(index, String.valueOf(value));
+    private final void indexLines() {
+        if (lineStarts == null) {
+            lineStarts = new int[16];
+            lineCount = 1;
+            indexedLength = 0;
+        }
+        char previous = indexedLength > 0 ? charAt(indexedLength - 1) : '\u0000';
+        int start = indexedLength;
+        while (start < size) {
+            char[] chars = page(start / pageSize);
+            int from = start % pageSize;
+            int to = Math.min(pageSize, from + size - start);
+            for (int i = from; i < to; i++) {
+                char c = chars[i];
+                if (c == '\r' || c == '\n') {
+                    int lineStart = start + i - from + 1;
+                    if (c == '\n' && previous == '\r') {
+                        lineStarts[lineCount - 1] = lineStart;
+                    } else {
+                        if (lineCount == lineStarts.length) {
+                            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+                        }
+                        lineStarts[lineCount++] = lineStart;
+                    }
+                }
+                previous = c;
+            }
+            start += to - from;
+        }
+        indexedLength = size;
     }
 
     /**
-     * Inserts the {@link String} representation of the {@code char} array argument to this {@link CharacterBuffer} at the specified index.
-     * 
-     * @param index
-     *            position at which to insert.
-     * 
-     * @param characters
-     *            the {@code char} array to insert.
-     * 
-     * @return a reference to this object.
+     * Returns the index of the first occurrence of the {@link String} argument from the specified index, or the length if there is none.<br>
+     * The first character of the {@link String} is searched straight in the memory pages, only its candidates are compared by {@link #charAt(int)}.
      */
-    public final CharacterBuffer insert(int index, char[] characters) {
-        return insert(index, String.valueOf(characters));
+    private final int indexOfDelimiter(String text, int start) {
+        char first = text.charAt(0);
+        int limit = size - text.length();
+        while (start <= limit) {
+            start = indexOfMatch(value -> value == first, true, start);
+            if (start > limit) {
+                break;
+            }
+            int j = 1;
+            while (j < text.length() && charAt(start + j) == text.charAt(j)) {
+                j++;
+            }
+            if (j == text.length()) {
+                return start;
+            }
+            start++;
+        }
+        return size;
     }
 
     /**
-     * inserts the {@link String} representation of a subarray of the {@code char} array argument to this {@link CharacterBuffer} at the specified index.
-     * 
-     * 
-     * @param index
-     *            position at which to insert.
-     * 
-     * @param characters
-     *            the {@code char} array to insert.
-     * 
-     * @param offset
-     *            the index of the first {@code char} to insert.
-     * 
-     * @param length
-     *            the number of {@code char}s to insert.
-     * 
-     * @return a reference to this object.
+     * Returns the index of the first {@code '\n'} or {@code '\r'} in the specified range, or {@code end} if there is none.
      */
-    public final CharacterBuffer insert(int index, char[] characters, int offset, int length) {
-        return insert(index, String.valueOf(characters, offset, length));
+    private final int indexOfLineTerminator(int start, int end) {
+        while (start < end) {
+            char[] chars = page(start / pageSize);
+            int from = start % pageSize;
+            int to = Math.min(pageSize, from + end - start);
+            for (int i = from; i < to; i++) {
+                if (chars[i] == '\n' || chars[i] == '\r') {
+                    return start + i - from;
+                }
+            }
+            start += to - from;
+        }
+        return end;
     }
 
     /**
-     * Inserts the specified {@code CharSequence} to this {@link CharacterBuffer} at the specified index.
-     * 
-     * @param index
-     *            position at which to insert.
-     * 
-     * @param text
-     *            the {@code CharSequence} to insert.
-     * 
-     * @return a reference to this object.
+     * Returns the index of the first {@code char} from the specified index for which the {@link CharPredicate} returns the expected result, or the length if there is none.
      */
-    public final CharacterBuffer insert(int index, CharSequence text) {
-        int remaining = text.length();
-        if (remaining < 1) {
-            return this;
+    private final int indexOfMatch(CharPredicate predicate, boolean expected, int start) {
+        while (start < size) {
+            char[] chars = page(start / pageSize);
+            int from = start % pageSize;
+            int to = Math.min(pageSize, from + size - start);
+            for (int i = from; i < to; i++) {
+                if (predicate.test(chars[i]) == expected) {
+                    return start + i - from;
+                }
+            }
+            start += to - from;
+        }
+        return Math.max(start, size);
+    }
+
+    /**
+     * Returns {@code true} if the memory page at the specified index is shared with a frozen {@link CharacterText}, see {@link #freeze()}.
+     */
+    private final boolean isShared(int index) {
+        return sharedPages != null && sharedPages.get(index);
+    }
+
+    /**
+     * Brings back to the heap the compressed or spilled memory page at the specified index and keeps it as a hot page.
+     */
+    private final char[] load(int index) {
+        byte[] bytes;
+        if (packed != null && index < packed.length && packed[index] != null) {
+            bytes = packed[index];
+        } else if (spilled != null && spilled.get(index)) {
+            bytes = unspill(index);
+        } else {
+            throw new IndexOutOfBoundsException("memory page: " + index);
         }
-        toStringCache = null;
-        CharacterBuffer sufix = subSequence(index, size);
-        page = index / pageSize;
-        offset = index % pageSize;
-        size = index;
-        append(text);
-        append(sufix);
-        return this;
+        char[] chars = unpack(bytes);
+        memory[index] = chars;
+        resident.add(index);
+        recentPage = index;
+        if (stats != null) {
+            stats.coldPageLoaded();
+        }
+        evictColdPages();
+        return chars;
     }
 
     /**
-     * Inserts a subsequence of the specified {@code CharSequence} to this {@link CharacterBuffer} at the specified index.
-     * 
-     * @param index
-     *            position at which to insert.
-     * 
-     * @param text
-     *            the {@code CharSequence} to insert.
-     * 
-     * @param start
-     *            the starting index of the subsequence to insert.
-     * 
-     * @param end
-     *            the end index of the subsequence to insert.
-     * 
-     * @return a reference to this object.
+     * Decodes the content of the {@link ReadableByteChannel} argument straight into the memory pages.
      */
-    public final CharacterBuffer insert(int index, CharSequence text, int start, int end) {
-        return insert(index, text.subSequence(start, end));
+    private final CharacterBuffer readFrom(ReadableByteChannel channel, CharsetDecoder decoder) throws IOException {
+        ByteBuffer bytes = decoderInput;
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            endOfInput = channel.read(bytes) < 0;
+            bytes.flip();
+            decode(decoder, bytes, endOfInput);
+            bytes.compact();
+        }
+        return this;
     }
 
     /**
-     * Inserts the {@link String} representation of the {@code dpuble} argument to this {@link CharacterBuffer} at the specified index.
-     * 
-     * @param index
-     *            position at which to insert.
-     * 
-     * @param value
-     *            the {@code double} to insert.
-     * 
-     * @return a reference to this object.
+     * Reads the memory pages written by the serial format {@code 1}, that encoded the characters with the platform's default charset.
      */
-    public final CharacterBuffer insert(int index, double value) {
-        return insert(index, String.valueOf(value));
+    private final void readLegacyObject(ObjectInputStream in, int pageSize) throws IOException {
+        this.pageSize = pageSize;
+        size = in.readInt();
+        if (size < 0) {
+            throw new InvalidObjectException("invalid size: " + size);
+        }
+        page = size / pageSize;
+        offset = size % pageSize;
+        memory = new char[page + 1][];
+        InputStreamReader reader = new InputStreamReader(in);
+        for (int page = 0; page <= this.page; page++) {
+            memory[page] = new char[pageSize];
+            int length = page == this.page ? offset : pageSize;
+            for (int read = 0; read < length;) {
+                int count = reader.read(memory[page], read, length - read);
+                if (count < 0) {
+                    throw new EOFException("expected " + size + " chars");
+                }
+                read += count;
+            }
+        }
     }
 
     /**
-     * Inserts the {@link String} representation of the {@code float} argument to this {@link CharacterBuffer} at the specified index.
-     * 
-     * @param index
-     *            position at which to insert.
-     * 
-     * @param value
-     *            the {@code float} to insert.
-     * 
-     * @return a reference to this object.
+     * Returns the index of the first mismatching character among the first {@code length} characters, or {@code length} if there is none.
      */
-    public final CharacterBuffer insert(int index, float value) {
-        return insert(index, String.valueOf(value));
+    private final int mismatch(CharSequence text, int length) {
+        if (text instanceof CharacterBuffer) {
+            // the other buffer may have a different page size, so the slices are bounded by both pages
+            CharacterBuffer that = (CharacterBuffer) text;
+            for (int index = 0; index < length;) {
+                int thisOffset = index % pageSize;
+                int thatOffset = index % that.pageSize;
+                int count = Math.min(Math.min(pageSize - thisOffset, that.pageSize - thatOffset), length - index);
+                char[] these = this.page(index / pageSize);
+                char[] those = that.page(index / that.pageSize);
+                for (int i = 0; i < count; i++) {
+                    if (these[thisOffset + i] != those[thatOffset + i]) {
+                        return index + i;
+                    }
+                }
+                index += count;
+            }
+            return length;
+        }
+        if (text instanceof String || text instanceof StringBuilder || text instanceof CharacterText) {
+            // slices of the other sequence are copied in bulk, so that the memory pages are compared in a tight loop instead of calling charAt() for each char
+            char[] slice = new char[Math.min(length, 1024)];
+            for (int index = 0; index < length; index += slice.length) {
+                int count = Math.min(slice.length, length - index);
+                if (text instanceof String) {
+                    ((String) text).getChars(index, index + count, slice, 0);
+                } else if (text instanceof StringBuilder) {
+                    ((StringBuilder) text).getChars(index, index + count, slice, 0);
+                } else {
+                    ((CharacterText) text).getChars(index, index + count, slice, 0);
+                }
+                int found = mismatch(index, slice, 0, count);
+                if (found < index + count) {
+                    return found;
+                }
+            }
+            return length;
+        }
+        for (int index = 0; index < length;) {
+            char[] chars = page(index / pageSize);
+            int start = index % pageSize;
+            int count = Math.min(pageSize - start, length - index);
+            for (int i = 0; i < count; i++, index++) {
+                if (chars[start + i] != text.charAt(index)) {
+                    return index;
+                }
+            }
+        }
+        return length;
     }
 
     /**
-     * Inserts the {@link String} representation of the {@code int} argument to this {@link CharacterBuffer} at the specified index.
-     * 
-     * @param index
-     *            position at which to insert.
-     * 
-     * @param value
-     *            the {@code int} to insert.
-     * 
-     * @return a reference to this object.
+     * Returns the index of the first mismatching character among the {@code count} characters from {@code start}
+     * and the ones of the {@code char} array from {@code offset}, or {@code start + count} if there is none.
      */
-    public final CharacterBuffer insert(int index, int value) {
-        return insert(index, String.valueOf(value));
+    private final int mismatch(int start, char[] chars, int offset, int count) {
+        int end = start + count;
+        for (int index = start; index < end;) {
+            char[] these = page(index / pageSize);
+            int from = index % pageSize;
+            int length = Math.min(pageSize - from, end - index);
+            int base = offset + index - start;
+            for (int i = 0; i < length; i++) {
+                if (these[from + i] != chars[base + i]) {
+                    return index + i;
+                }
+            }
+            index += length;
+        }
+        return end;
     }
 
     /**
-     * Inserts the {@link String} representation of the {@code long} argument to this {@link CharacterBuffer} at the specified index.
-     * 
-     * @param index
-     *            position at which to insert.
-     * 
-     * @param value
-     *            the {@code long} to insert.
-     * 
-     * @return a reference to this object.
+     * Packs the {@code char} array argument into a {@code byte} array, compressed if the compression is enabled.<br>
+     * The first {@code byte} flags if the {@code char}s were stored as {@code ISO-8859-1} (bit 0) and if they were deflated (bit 1).
      */
-    public final CharacterBuffer insert(int index, long value) {
-        return insert(index, String.valueOf(value));
+    private final byte[] pack(char[] chars) {
+        int rawLength = pageSize * 2 + 1;
+        if (packBuffer == null) {
+            // the first half holds the raw bytes, the second half the deflated ones
+            packBuffer = new byte[rawLength * 2];
+        }
+        boolean latin1 = isLatin1(chars, 0, pageSize);
+        int length = 1;
+        if (latin1) {
+            for (int i = 0; i < pageSize; i++) {
+                packBuffer[length++] = (byte) chars[i];
+            }
+        } else {
+            for (int i = 0; i < pageSize; i++) {
+                packBuffer[length++] = (byte) (chars[i] >>> 8);
+                packBuffer[length++] = (byte) chars[i];
+            }
+        }
+        packBuffer[0] = (byte) (latin1 ? 1 : 0);
+        if (compressed) {
+            if (deflater == null) {
+                deflater = new Deflater(Deflater.BEST_SPEED);
+            }
+            deflater.reset();
+            deflater.setInput(packBuffer, 1, length - 1);
+            deflater.finish();
+            packBuffer[rawLength] = (byte) (packBuffer[0] | 2);
+            int packedLength = 1;
+            while (!deflater.finished() && packedLength < length) {
+                packedLength += deflater.deflate(packBuffer, rawLength + packedLength, length - packedLength);
+            }
+            if (deflater.finished()) {
+                return Arrays.copyOfRange(packBuffer, rawLength, rawLength + packedLength);
+            }
+            // not compressible, keeps the raw bytes
+        }
+        return Arrays.copyOf(packBuffer, length);
     }
 
     /**
-     * Inserts the {@link String} representation of the {@link Object} argument to this {@link CharacterBuffer} at the specified index.
-     * 
-     * @param index
-     *            position at which to insert.
-     * 
-     * @param object
-     *            the {@link Object} to insert.
-     * 
-     * @return a reference to this object.
+     * Returns the memory page at the specified index, bringing it back to the heap if necessary.
      */
-    public final CharacterBuffer insert(int index, Object object) {
-        return insert(index, String.valueOf(object));
+    private final char[] page(int index) {
+        char[] chars = memory[index];
+        if (chars == null) {
+            return load(index);
+        }
+        if (hotPages > 0) {
+            touch(index);
+        }
+        return chars;
     }
 
     /**
-     * Returns the index within this {@link CharacterBuffer} of the last occurrence of the specified {@link CharSequence}.<br>
-     * The last occurrence of the empty {@link String} {@code ""} is considered to occur at the index value {@code this.length()}.<br>
-     * <b>Hint:</b> This search is performed from right to left.
-     *
-     * 
-     * @param text
-     *            the {@link CharSequence} to search for.
-     * 
-     * @return the index of the last occurrence of the specified {@link CharSequence}<br>
-     *         {@code -1} if there is no such occurrence.
+     * Called when the write page is full, doubles the adaptive first memory page while it is smaller than the page size, otherwise moves to the next memory page.
      */
-    public final int lastIndexOf(CharSequence text) {
-        return lastIndexOf(text, size);
+    private final void pageFull() {
+        if (offset < pageSize) {
+            memory[0] = Arrays.copyOf(memory[0], Math.min(pageSize, offset * 2));
+        } else {
+            if (deduplicate) {
+                deduplicate(page);
+            }
+            offset = 0;
+            allocateNext();
+        }
     }
 
     /**
-     * Returns the index within this {@link CharacterBuffer} of the last occurrence of the specified {@link CharSequence}.<br>
-     * The last occurrence of the empty {@link String} {@code ""} is considered to occur at the index value {@code this.length()}.<br>
-     * <b>Hint:</b> This search is performed from right to left starting at the specified index.
-     *
-     * 
-     * @param text
-     *            the {@link CharSequence} to search for.
-     * @param fromIndex
-     *            the index to start the search from.
-     * 
-     * @return the index of the last occurrence of the specified {@link CharSequence}<br>
-     *         {@code -1} if there is no such occurrence.
+     * Custom serialization implementation.<br>
+     * Read the {@link Serializable} interface documentation for more info.
      */
-    public final int lastIndexOf(CharSequence text, int fromIndex) {
-        if (text.length() == 0) {
-            return size;
+    private final void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        cachePolicy = CachePolicy.SOFT;
+        cacheLimit = Integer.MAX_VALUE;
+        int format = in.readInt();
+        if (format > 0) {
+            // the serial format 1 started straight with the page size
+            readLegacyObject(in, format);
+            return;
         }
-        NEXT: for (int i = fromIndex; i >= text.length(); i--) {
-            for (int j = 0; j < text.length(); j++) {
-                if (text.charAt(j) != this.charAt(i + j)) {
-                    continue NEXT;
+        if (-format != 2 && -format != SERIAL_FORMAT) {
+            throw new InvalidObjectException("unsupported serial format: " + -format);
+        }
+        pageSize = in.readInt();
+        size = in.readInt();
+        if (pageSize < 1 || size < 0) {
+            throw new InvalidObjectException("invalid page size or size: " + pageSize + ", " + size);
+        }
+        if (-format == SERIAL_FORMAT) {
+            // the serial format 2 had no options
+            firstPageSize = in.readInt();
+            compressed = in.readBoolean();
+            hotPages = in.readInt();
+            maxHeap = in.readLong();
+            deduplicate = in.readBoolean();
+            try {
+                cachePolicy = CachePolicy.valueOf(in.readUTF());
+            } catch (IllegalArgumentException e) {
+                throw new InvalidObjectException(e.getMessage());
+            }
+            cacheLimit = in.readInt();
+            if (firstPageSize < 0 || firstPageSize > pageSize || hotPages < 0 || maxHeap < 0 || cacheLimit < 0) {
+                throw new InvalidObjectException("invalid options");
+            }
+        }
+        page = size / pageSize;
+        offset = size % pageSize;
+        memory = new char[page + 1][];
+        if (hotPages > 0) {
+            packed = new byte[page + 1][];
+            spilled = new BitSet();
+            resident = new LinkedHashSet<Integer>();
+        }
+        byte[] bytes = new byte[Math.min(pageSize, 8192) * 2];
+        for (int page = 0; page <= this.page; page++) {
+            char[] chars = memory[page] = new char[pageSize];
+            int length = page == this.page ? offset : pageSize;
+            if (length < 1) {
+                continue;
+            }
+            readChars(in, chars, length, bytes);
+            if (page < this.page) {
+                if (deduplicate) {
+                    deduplicate(page);
+                }
+                if (hotPages > 0) {
+                    // the cold pages are evicted while reading, so the heap budget holds for the deserialized buffer too
+                    resident.add(page);
+                    recentPage = page;
+                    evictColdPages();
                 }
             }
-            return i;
         }
-        return -1;
     }
 
     /**
-     * Returns the length (character count) of this {@link CharacterBuffer}.
-     *
-     * @return the length of the sequence of characters currently represented by this object.
+     * Wraps the value to be cached according to the {@link CachePolicy}.
      */
-    @Override
-    public final int length() {
-        return size;
+    private final Object reference(Object value) {
+        return cachePolicy == CachePolicy.SOFT ? new SoftReference<Object>(value) : value;
     }
 
     /**
-     * Returns a new {@link CharacterBuffer} that is a subsequence of this character sequence.
-     * 
-     * @param start
-     *            the start index, inclusive.
-     * 
-     * @param end
-     *            the end index, exclusive.
-     * 
-     * @return a new {@link CharacterBuffer} with the specified subsequence.
+     * Releases the memory page at the specified index, that is beyond the write position.
      */
-    @Override
-    public final CharacterBuffer subSequence(int start, int end) {
-        CharacterBuffer subSequence = CharacterBuffer.with(pageSize).chars();
-        int length = end - start;
-        for (int i = 0; i < length; i++) {
-            subSequence.append(charAt(start + i));
+    private final void release(int index) {
+        memory[index] = null;
+        if (hotPages > 0) {
+            discardColdCopy(index);
+            resident.remove(index);
         }
-        return subSequence;
     }
 
     /**
-     * Returns a new {@link String} that contains a subsequence of characters currently contained in this {@link CharacterBuffer}.<br>
-     * The substring begins at the specified index and extends to the end of this {@link CharacterBuffer}.
-     *
-     * @param start
-     *            The beginning index, inclusive.
-     * 
-     * @return The new {@link String}.
+     * Writes the packed memory page at the specified index to the spill file, each page has its own fixed size slot.
      */
-    public final String substring(int start) {
-        return substring(start, size);
+    private final void spill(int index, byte[] bytes) {
+        try {
+            if (spillFile == null) {
+                // on Unix the file is unlinked as soon as it is opened, elsewhere it is deleted when the channel is closed, see closeSpillFile()
+                Path path = Files.createTempFile("CharacterBuffer", ".spill");
+                spillFile = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            ByteBuffer record = ByteBuffer.allocate(4 + bytes.length);
+            record.putInt(bytes.length).put(bytes).flip();
+            long position = index * (pageSize * 2L + 5);
+            while (record.hasRemaining()) {
+                position += spillFile.write(record, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
-     * Returns a new {@link String} that contains a subsequence of characters currently contained in this {@link CharacterBuffer}.<br>
-     * The substring begins at the specified {@code start} and extends to the character at index {@code end - 1}.
-     *
-     * @param start
-     *            The beginning index, inclusive.
-     * @param end
-     *            The ending index, exclusive.
-     * 
-     * @return The new {@link String}.
+     * Returns where the specified range should be split by a parallel stream, preferably on a memory page boundary.<br>
+     * The cold memory pages are loaded on demand and that is not thread safe, so when they are enabled the range is never split.
      */
-    public final String substring(int start, int end) {
-        return subSequence(start, end).toString();
+    private final int splitPoint(int start, int end) {
+        if (hotPages > 0) {
+            return start;
+        }
+        int middle = (start + end) >>> 1;
+        int boundary = middle - middle % pageSize;
+        return boundary > start ? boundary : middle;
     }
 
     /**
-     * Returns a {@link String} representing the data in this sequence.<br>
-     * A new {@link String} object is allocated and initialized to contain the character sequence currently represented by this object.<br>
-     * This {@link String} is then returned.<br>
-     * Subsequent changes to this sequence do not affect the contents of the {@link String}.
-     *
-     * @return a {@link String} representation of this {@link CharacterBuffer}.
+     * Moves the hot memory page at the specified index to the most recently used end, so that the pages read often are the last ones to be evicted.
      */
-    @Override
-    public final String toString() {
-        if (toStringCache == null || toStringCache.get() == null) {
-            int index = 0;
-            char[] chars = new char[size];
-            int last = size / pageSize;
-            if (last > -1) {
-                for (int page = 0; page < last; page++) {
-                    System.arraycopy(memory[page], 0, chars, index, pageSize);
-                    index += pageSize;
-                }
-                System.arraycopy(memory[last], 0, chars, index, offset);
+    private final void touch(int index) {
+        // the most recently used page is already at the end, so sequential reads do not reorder the pages for every character
+        if (index != recentPage && resident.remove(index)) {
+            resident.add(index);
+            recentPage = index;
+        }
+    }
+
+    /**
+     * Called after the content was truncated, the memory pages after the write position are kept to be reused,
+     * except when the cold pages are enabled, since their compressed or spilled copies are useless.
+     */
+    private final void truncated() {
+        if (hotPages > 0) {
+            for (int i = page + 1; i < memory.length; i++) {
+                release(i);
             }
-            toStringCache = new SoftReference<String>(String.valueOf(chars));
+            closeSpillFile();
         }
-        return toStringCache.get();
     }
 
     /**
-     * Allocates the first memory page for the character sequence storage.
+     * Unpacks the {@code byte} array argument, created by the {@link #pack(char[])} method.
      */
-    private final void allocate() {
-        memory = new char[1][pageSize];
+    private final char[] unpack(byte[] bytes) {
+        boolean latin1 = (bytes[0] & 1) != 0;
+        int length = latin1 ? pageSize : pageSize * 2;
+        byte[] raw = bytes;
+        int start = 1;
+        if ((bytes[0] & 2) != 0) {
+            if (inflater == null) {
+                inflater = new Inflater();
+            }
+            if (packBuffer == null) {
+                packBuffer = new byte[(pageSize * 2 + 1) * 2];
+            }
+            inflater.reset();
+            inflater.setInput(bytes, 1, bytes.length - 1);
+            try {
+                for (int inflated = 0; inflated < length;) {
+                    int count = inflater.inflate(packBuffer, inflated, length - inflated);
+                    if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IllegalStateException("corrupted memory page");
+                    }
+                    inflated += count;
+                }
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("corrupted memory page", e);
+            }
+            raw = packBuffer;
+            start = 0;
+        }
+        char[] chars = new char[pageSize];
+        if (latin1) {
+            for (int i = 0; i < pageSize; i++) {
+                chars[i] = (char) (raw[start + i] & 0xFF);
+            }
+        } else {
+            for (int i = 0, j = start; i < pageSize; i++, j += 2) {
+                chars[i] = (char) ((raw[j] & 0xFF) << 8 | (raw[j + 1] & 0xFF));
+            }
+        }
+        return chars;
     }
 
     /**
-     * Allocates the next memory page for the character sequence storage.
+     * Reads back the packed memory page at the specified index from the spill file.
      */
-    private final void allocateNext() {
-        char[][] moreMemory = new char[++page + 1][];
-        System.arraycopy(memory, 0, moreMemory, 0, page);
-        moreMemory[page] = new char[pageSize];
-        memory = moreMemory;
+    private final byte[] unspill(int index) {
+        try {
+            long position = index * (pageSize * 2L + 5);
+            ByteBuffer header = ByteBuffer.allocate(4);
+            readFully(spillFile, header, position);
+            ByteBuffer record = ByteBuffer.allocate(header.getInt(0));
+            readFully(spillFile, record, position + 4);
+            return record.array();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
-     * Custom serialization implementation.<br>
-     * Read the {@link Serializable} interface documentation for more info.
+     * Returns the memory page at the specified index, bringing it back to the heap if necessary, and discards its cold copy since it is about to change.
      */
-    private final void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
-        pageSize = in.readInt();
-        size = in.readInt();
-        int pages = (size / pageSize) + 1;
-        page = size / pageSize;
-        offset = size % pageSize;
-        memory = new char[pages][];
-        InputStreamReader reader = new InputStreamReader(in);
-        for (int page = 0; page < pages; page++) {
-            memory[page] = new char[pageSize];
-            reader.read(memory[page], 0, pageSize);
+    private final char[] writablePage(int index) {
+        char[] chars = page(index);
+        if (isShared(index)) {
+            // copy on write, the frozen CharacterTexts keep the original memory page
+            chars = memory[index] = chars.clone();
+            sharedPages.clear(index);
         }
+        if (hotPages > 0) {
+            discardColdCopy(index);
+        }
+        return chars;
     }
 
     /**
@@ -832,14 +4033,25 @@ public final class CharacterBuffer implements Appendable, CharSequence, Comparab
      * Read the {@link Serializable} interface documentation for more info.
      */
     private final void writeObject(ObjectOutputStream out) throws IOException {
+        out.writeInt(-SERIAL_FORMAT);
         out.writeInt(pageSize);
         out.writeInt(size);
-        int pages = (size / pageSize) + 1;
-        int lastPage = pages - 1;
-        OutputStreamWriter writer = new OutputStreamWriter(out);
-        for (int page = 0; page < pages; page++) {
-            writer.write(memory[page], 0, page == lastPage ? offset : pageSize);
+        out.writeInt(firstPageSize);
+        out.writeBoolean(compressed);
+        out.writeInt(hotPages);
+        out.writeLong(maxHeap);
+        out.writeBoolean(deduplicate);
+        out.writeUTF(cachePolicy.name());
+        out.writeInt(cacheLimit);
+        byte[] bytes = new byte[Math.min(pageSize, 8192) * 2];
+        int last = size / pageSize;
+        for (int page = 0; page <= last; page++) {
+            char[] chars = page(page);
+            int length = page == last ? offset : pageSize;
+            if (length < 1) {
+                continue;
+            }
+            writeChars(out, chars, length, bytes);
         }
-        writer.flush();
     }
-}
\ No newline at end of file
+}
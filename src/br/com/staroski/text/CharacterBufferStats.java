@@ -0,0 +1,259 @@
+package br.com.staroski.text;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Runtime counters of how {@link CharacterBuffer}s behave, so that the memory page sizes can be tuned from real traffic.<br>
+ * The counters are off by default, they are enabled by passing a {@link CharacterBufferStats} to the builder, and many buffers may share the same instance to aggregate their counters.<br>
+ * The counters are {@link LongAdder}s, so the buffers of many threads can record to the same instance without contention.
+ *
+ * <p>
+ * <b>Example:</b><br>
+ * Aggregating the counters of all the buffers of a service and publishing them through JMX:
+ * </p>
+ *
+ * <pre>
+ * CharacterBufferStats stats = new CharacterBufferStats();
+ * stats.register("documents");
+ * CharacterBuffer buffer = CharacterBuffer.with(16).kilo().stats(stats).bytes();
+ * </pre>
+ *
+ * @author Ricardo Artur Staroski
+ */
+public final class CharacterBufferStats implements CharacterBufferStatsMXBean {
+
+    private final LongAdder coldPageLoads = new LongAdder();
+    private final LongAdder deduplicationHitBytes = new LongAdder();
+    private final LongAdder deduplicationHits = new LongAdder();
+    private final LongAdder deduplicationMisses = new LongAdder();
+    private final LongAdder deleteMovedChars = new LongAdder();
+    private final LongAdder directoryCopiedSlots = new LongAdder();
+    private final LongAdder directoryGrowths = new LongAdder();
+    private final LongAdder insertMovedChars = new LongAdder();
+    private final LongAdder pageAllocations = new LongAdder();
+    private final LongAccumulator peakSize = new LongAccumulator(Math::max, 0);
+    private final LongAdder toStringCacheHits = new LongAdder();
+    private final LongAdder toStringCacheMisses = new LongAdder();
+
+    private ObjectName objectName;
+
+    /**
+     * @return how many {@link CharacterBuffer.Amount#compress(int) compressed} or {@link CharacterBuffer.Amount#maxHeap(int) spilled} memory pages were brought back to the heap.
+     */
+    @Override
+    public final long getColdPageLoads() {
+        return coldPageLoads.sum();
+    }
+
+    /**
+     * Returns the cumulative amount of {@code byte}s of the full memory pages that were replaced by identical ones interned by other buffers, see {@link CharacterBuffer.Amount#deduplicate()}.<br>
+     * Like the other counters it never decreases, the shared pages that are later copied on write or released are not subtracted, so it is not the amount of heap saved at a given moment.
+     *
+     * @return the amount of {@code byte}s of the {@link #getDeduplicationHits() deduplication hits}.
+     */
+    @Override
+    public final long getDeduplicationHitBytes() {
+        return deduplicationHitBytes.sum();
+    }
+
+    /**
+     * Returns how many full memory pages were replaced by identical ones shared with other buffers, see {@link CharacterBuffer.Amount#deduplicate()}.<br>
+     * The hit rate of the deduplication is {@code hits / (hits + misses)}.
+     *
+     * @return the amount of deduplicated memory pages.
+     */
+    @Override
+    public final long getDeduplicationHits() {
+        return deduplicationHits.sum();
+    }
+
+    /**
+     * @return how many full memory pages had no identical page to be shared with, so they were kept to be shared by the next ones, see {@link CharacterBuffer.Amount#deduplicate()}.
+     */
+    @Override
+    public final long getDeduplicationMisses() {
+        return deduplicationMisses.sum();
+    }
+
+    /**
+     * @return the amount of {@code char}s moved by {@link CharacterBuffer#delete(int, int)} to close the gap of the removed ones.
+     */
+    @Override
+    public final long getDeleteMovedChars() {
+        return deleteMovedChars.sum();
+    }
+
+    /**
+     * @return the amount of memory page references copied when the memory page directories grew.
+     */
+    @Override
+    public final long getDirectoryCopiedSlots() {
+        return directoryCopiedSlots.sum();
+    }
+
+    /**
+     * @return how many times a memory page directory was copied to grow.
+     */
+    @Override
+    public final long getDirectoryGrowths() {
+        return directoryGrowths.sum();
+    }
+
+    /**
+     * @return the amount of {@code char}s moved by {@link CharacterBuffer#insert(int, CharSequence)} to open the gap of the inserted ones.
+     */
+    @Override
+    public final long getInsertMovedChars() {
+        return insertMovedChars.sum();
+    }
+
+    /**
+     * @return the amount of memory pages allocated.
+     */
+    @Override
+    public final long getPageAllocations() {
+        return pageAllocations.sum();
+    }
+
+    /**
+     * Returns the largest length seen, it is sampled when memory pages are allocated, when {@link CharacterBuffer#toString()} is called and before a buffer shrinks.
+     *
+     * @return the largest length of the buffers.
+     */
+    @Override
+    public final long getPeakSize() {
+        return peakSize.get();
+    }
+
+    /**
+     * @return how many times {@link CharacterBuffer#toString()} returned the cached {@link String}.
+     */
+    @Override
+    public final long getToStringCacheHits() {
+        return toStringCacheHits.sum();
+    }
+
+    /**
+     * @return how many times {@link CharacterBuffer#toString()} had to materialize the {@link String}.
+     */
+    @Override
+    public final long getToStringCacheMisses() {
+        return toStringCacheMisses.sum();
+    }
+
+    /**
+     * Registers these counters in the platform {@link MBeanServer} under the name {@code br.com.staroski.text:type=CharacterBufferStats,name=<name>}.
+     *
+     * @param name
+     *            the name that identifies these counters.
+     *
+     * @return the {@link ObjectName} of the registered MXBean.
+     *
+     * @throws JMException
+     *             if the name is invalid or already registered.
+     */
+    public final synchronized ObjectName register(String name) throws JMException {
+        if (objectName != null) {
+            throw new IllegalStateException("already registered as " + objectName);
+        }
+        ObjectName objectName = new ObjectName("br.com.staroski.text:type=CharacterBufferStats,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return this.objectName = objectName;
+    }
+
+    /**
+     * Resets all the counters to zero.
+     */
+    @Override
+    public final void reset() {
+        coldPageLoads.reset();
+        deduplicationHitBytes.reset();
+        deduplicationHits.reset();
+        deduplicationMisses.reset();
+        deleteMovedChars.reset();
+        directoryCopiedSlots.reset();
+        directoryGrowths.reset();
+        insertMovedChars.reset();
+        pageAllocations.reset();
+        peakSize.reset();
+        toStringCacheHits.reset();
+        toStringCacheMisses.reset();
+    }
+
+    @Override
+    public final String toString() {
+        return "CharacterBufferStats [pageAllocations=" + getPageAllocations()
+                + ", directoryGrowths=" + getDirectoryGrowths()
+                + ", directoryCopiedSlots=" + getDirectoryCopiedSlots()
+                + ", toStringCacheHits=" + getToStringCacheHits()
+                + ", toStringCacheMisses=" + getToStringCacheMisses()
+                + ", insertMovedChars=" + getInsertMovedChars()
+                + ", deleteMovedChars=" + getDeleteMovedChars()
+                + ", coldPageLoads=" + getColdPageLoads()
+                + ", deduplicationHits=" + getDeduplicationHits()
+                + ", deduplicationMisses=" + getDeduplicationMisses()
+                + ", deduplicationHitBytes=" + getDeduplicationHitBytes()
+                + ", peakSize=" + getPeakSize() + "]";
+    }
+
+    /**
+     * Unregisters these counters from the platform {@link MBeanServer}, if they were {@link #register(String) registered}.
+     *
+     * @throws JMException
+     *             if the MXBean can not be unregistered.
+     */
+    public final synchronized void unregister() throws JMException {
+        if (objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        }
+    }
+
+    final void coldPageLoaded() {
+        coldPageLoads.increment();
+    }
+
+    final void deduplicationHit(long bytes) {
+        deduplicationHits.increment();
+        deduplicationHitBytes.add(bytes);
+    }
+
+    final void deduplicationMiss() {
+        deduplicationMisses.increment();
+    }
+
+    final void deleteMoved(int chars) {
+        deleteMovedChars.add(chars);
+    }
+
+    final void directoryGrown(int copiedSlots) {
+        directoryGrowths.increment();
+        directoryCopiedSlots.add(copiedSlots);
+    }
+
+    final void insertMoved(int chars) {
+        insertMovedChars.add(chars);
+    }
+
+    final void pageAllocated() {
+        pageAllocations.increment();
+    }
+
+    final void sized(long size) {
+        peakSize.accumulate(size);
+    }
+
+    final void toStringCacheHit() {
+        toStringCacheHits.increment();
+    }
+
+    final void toStringCacheMiss() {
+        toStringCacheMisses.increment();
+    }
+}
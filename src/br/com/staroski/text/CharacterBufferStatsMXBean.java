@@ -0,0 +1,35 @@
+package br.com.staroski.text;
+
+/**
+ * Management interface of the {@link CharacterBufferStats}, see {@link CharacterBufferStats#register(String)}.
+ *
+ * @author Ricardo Artur Staroski
+ */
+public interface CharacterBufferStatsMXBean {
+
+    long getColdPageLoads();
+
+    long getDeduplicationHitBytes();
+
+    long getDeduplicationHits();
+
+    long getDeduplicationMisses();
+
+    long getDeleteMovedChars();
+
+    long getDirectoryCopiedSlots();
+
+    long getDirectoryGrowths();
+
+    long getInsertMovedChars();
+
+    long getPageAllocations();
+
+    long getPeakSize();
+
+    long getToStringCacheHits();
+
+    long getToStringCacheMisses();
+
+    void reset();
+}
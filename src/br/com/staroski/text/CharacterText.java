@@ -0,0 +1,318 @@
+package br.com.staroski.text;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import br.com.staroski.text.CharacterBuffer.ChunkConsumer;
+
+/**
+ * An immutable character sequence that shares the memory pages of the {@link CharacterBuffer} it was frozen from, see {@link CharacterBuffer#freeze()}.<br>
+ * Freezing copies no character: the {@link CharacterBuffer} copies a shared memory page only before it changes a character that this text can read,
+ * so the text stays the same no matter what is done to the buffer afterwards.<br>
+ * Since it never changes, a {@link CharacterText} can be read by many threads at the same time without any synchronization, and its hash code is computed only once.
+ *
+ * <p>
+ * <b>Example:</b><br>
+ * Handing a document to many readers without copying it for each one:
+ * </p>
+ *
+ * <pre>
+ * CharacterText document = buffer.freeze();
+ * for (Reader reader : readers) {
+ *     executor.submit(() -> reader.read(document));
+ * }
+ * </pre>
+ *
+ * @author Ricardo Artur Staroski
+ */
+public final class CharacterText implements CharSequence, Comparable<CharSequence>, Serializable {
+
+    /**
+     * The serialized form of a {@link CharacterText}, that keeps the fields of the text final.<br>
+     * Read the {@link Serializable} interface documentation for more info.
+     */
+    private static final class SerializedForm implements Serializable {
+
+        private static final long serialVersionUID = 2;
+
+        private transient CharacterText text;
+
+        private SerializedForm(CharacterText text) {
+            this.text = text;
+        }
+
+        private final void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            int pageSize = in.readInt();
+            int length = in.readInt();
+            if (pageSize < 1 || length < 0) {
+                throw new InvalidObjectException("pageSize: " + pageSize + ", length: " + length);
+            }
+            char[][] pages = new char[(int) ((length + (long) pageSize - 1) / pageSize)][];
+            byte[] bytes = new byte[Math.min(pageSize, 8192) * 2];
+            for (int page = 0; page < pages.length; page++) {
+                char[] chars = pages[page] = new char[Math.min(pageSize, length - page * pageSize)];
+                CharacterBuffer.readChars(in, chars, chars.length, bytes);
+            }
+            text = new CharacterText(pages, pageSize, 0, length, null, 0);
+        }
+
+        private final Object readResolve() {
+            return text;
+        }
+
+        private final void writeObject(ObjectOutputStream out) throws IOException {
+            out.defaultWriteObject();
+            out.writeInt(text.pageSize);
+            out.writeInt(text.length);
+            // the text may start in the middle of a memory page, so each page of the serialized form is gathered first
+            char[] chars = new char[Math.min(text.pageSize, text.length)];
+            byte[] bytes = new byte[Math.min(text.pageSize, 8192) * 2];
+            for (int start = 0; start < text.length; start += chars.length) {
+                int length = Math.min(chars.length, text.length - start);
+                text.getChars(start, start + length, chars, 0);
+                CharacterBuffer.writeChars(out, chars, length, bytes);
+            }
+        }
+    }
+
+    private static final long serialVersionUID = 1;
+
+    private final char[][] pages;
+    private final int pageSize;
+    private final int start;
+    private final int length;
+
+    // racy single-check caches, like the hash of String, the values are the same no matter which thread computes them
+    private transient String string;
+    private transient int hash;
+
+    /**
+     * Package-private constructor, see {@link CharacterBuffer#freeze()} method.
+     */
+    CharacterText(char[][] pages, int pageSize, int start, int length, String string, int hash) {
+        this.pages = pages;
+        this.pageSize = pageSize;
+        this.start = start;
+        this.length = length;
+        this.string = string;
+        this.hash = hash;
+    }
+
+    @Override
+    public final char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        }
+        int i = start + index;
+        return pages[i / pageSize][i % pageSize];
+    }
+
+    /**
+     * Compares this {@link CharacterText} with the {@link CharSequence} argument lexicographically, the same way {@link String#compareTo(String)} does.
+     *
+     * @param that
+     *            the {@link CharSequence} to compare against.
+     *
+     * @return {@code 0} if {@code this} is equals to the {@link CharSequence} argument.<br>
+     *         A positive number if {@code this} is lexicographically greater than the {@link CharSequence} argument.<br>
+     *         A negative number if {@code this} is lexicographically less than the {@link CharSequence} argument.
+     */
+    @Override
+    public final int compareTo(CharSequence that) {
+        int index = mismatch(that);
+        if (index < 0) {
+            return 0;
+        }
+        if (index < length && index < that.length()) {
+            return charAt(index) - that.charAt(index);
+        }
+        return length - that.length();
+    }
+
+    /**
+     * Compares this {@link CharacterText} to the specified {@link CharSequence}.
+     *
+     * @param text
+     *            the {@link CharSequence} to compare against.
+     *
+     * @return {@code true} if both have the same characters.
+     */
+    public final boolean contentEquals(CharSequence text) {
+        return text.length() == length && mismatch(text) < 0;
+    }
+
+    /**
+     * Compares this {@link CharacterText} to the specified object, the result is {@code true} only if the argument is a {@link CharacterText} with the same characters.
+     *
+     * @param object
+     *            the object to compare against.
+     *
+     * @return {@code true} if both have the same characters.
+     */
+    @Override
+    public final boolean equals(Object object) {
+        if (object == this) {
+            return true;
+        }
+        if (object instanceof CharacterText) {
+            CharacterText that = (CharacterText) object;
+            return that.length == length && (hash == 0 || that.hash == 0 || hash == that.hash) && mismatch(that) < 0;
+        }
+        return false;
+    }
+
+    /**
+     * Visits all the characters of this {@link CharacterText} as runs of {@code char}s, one for each memory page.
+     *
+     * @param consumer
+     *            the {@link ChunkConsumer} that receives each run.
+     */
+    public final void forEachChunk(ChunkConsumer consumer) {
+        int i = start;
+        int end = start + length;
+        while (i < end) {
+            int from = i % pageSize;
+            int count = Math.min(pageSize - from, end - i);
+            consumer.accept(pages[i / pageSize], from, count);
+            i += count;
+        }
+    }
+
+    /**
+     * Copies the characters from {@code srcBegin} to {@code srcEnd} of this {@link CharacterText} into the destination {@code char} array, page by page,
+     * the same way {@link String#getChars(int, int, char[], int)} does.
+     *
+     * @param srcBegin
+     *            the beginning index, inclusive.
+     *
+     * @param srcEnd
+     *            the ending index, exclusive.
+     *
+     * @param dst
+     *            the {@code char} array that receives the characters.
+     *
+     * @param dstBegin
+     *            the index in the destination array where the first character is copied to.
+     */
+    public final void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        if (srcBegin < 0 || srcEnd > length || srcBegin > srcEnd) {
+            throw new IndexOutOfBoundsException("srcBegin: " + srcBegin + ", srcEnd: " + srcEnd + ", length: " + length);
+        }
+        if (dstBegin < 0 || dstBegin > dst.length - (srcEnd - srcBegin)) {
+            throw new IndexOutOfBoundsException("dstBegin: " + dstBegin + ", count: " + (srcEnd - srcBegin) + ", array length: " + dst.length);
+        }
+        int i = start + srcBegin;
+        int end = start + srcEnd;
+        while (i < end) {
+            int from = i % pageSize;
+            int count = Math.min(pageSize - from, end - i);
+            System.arraycopy(pages[i / pageSize], from, dst, dstBegin, count);
+            dstBegin += count;
+            i += count;
+        }
+    }
+
+    /**
+     * Returns the hash code of this {@link CharacterText}, that is the same of the {@link String} with the same characters.<br>
+     * <b>Hint:</b> The hash code is computed only once.
+     *
+     * @return the hash code of this {@link CharacterText}.
+     */
+    @Override
+    public final int hashCode() {
+        int h = hash;
+        if (h == 0 && length > 0) {
+            int i = start;
+            int end = start + length;
+            while (i < end) {
+                char[] chars = pages[i / pageSize];
+                int from = i % pageSize;
+                int to = Math.min(pageSize, from + end - i);
+                for (int k = from; k < to; k++) {
+                    h = 31 * h + chars[k];
+                }
+                i += to - from;
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public final int length() {
+        return length;
+    }
+
+    /**
+     * Returns a {@link CharacterText} that is a subsequence of this one, it shares the same memory pages, so no character is copied.
+     *
+     * @param start
+     *            the start index, inclusive.
+     *
+     * @param end
+     *            the end index, exclusive.
+     *
+     * @return a {@link CharacterText} with the specified subsequence.
+     */
+    @Override
+    public final CharacterText subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+        }
+        if (start == 0 && end == length) {
+            return this;
+        }
+        return new CharacterText(pages, pageSize, this.start + start, end - start, null, 0);
+    }
+
+    /**
+     * Returns the {@link String} with the characters of this {@link CharacterText}.<br>
+     * <b>Hint:</b> The {@link String} is created only once.
+     *
+     * @return the {@link String} representation of this {@link CharacterText}.
+     */
+    @Override
+    public final String toString() {
+        String s = string;
+        if (s == null) {
+            char[] chars = new char[length];
+            getChars(0, length, chars, 0);
+            string = s = new String(chars);
+        }
+        return s;
+    }
+
+    /**
+     * Returns the index of the first mismatching character between this {@link CharacterText} and the {@link CharSequence} argument,
+     * or {@code -1} if both have the same characters.
+     */
+    private final int mismatch(CharSequence that) {
+        int common = Math.min(length, that.length());
+        for (int i = 0; i < common; i++) {
+            int index = start + i;
+            if (pages[index / pageSize][index % pageSize] != that.charAt(i)) {
+                return i;
+            }
+        }
+        return length == that.length() ? -1 : common;
+    }
+
+    /**
+     * Serializes the {@link SerializedForm} instead of this {@link CharacterText}.<br>
+     * Read the {@link Serializable} interface documentation for more info.
+     */
+    private final Object writeReplace() {
+        return new SerializedForm(this);
+    }
+
+    /**
+     * A {@link CharacterText} is always serialized through its {@link SerializedForm}.
+     */
+    private final void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("serialized form required");
+    }
+}
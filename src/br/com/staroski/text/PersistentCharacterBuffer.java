@@ -0,0 +1,633 @@
+package br.com.staroski.text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import br.com.staroski.text.CharacterBuffer.ChunkConsumer;
+
+/**
+ * A character buffer that keeps its versions, so that each version can be restored, undone and redone without copying the content.<br>
+ * The characters are kept in memory pages whose characters never change once written, as slices that are the leaves of a balanced tree,
+ * so an edit only creates the tree path down to the slices it touches and the memory pages of the new characters,
+ * and all the other pages and subtrees are shared with the previous versions. This way {@link #snapshot()} is {@code O(1)},
+ * and thousands of versions of a big document share almost all of their memory.<br>
+ * Instances of this class are created through the {@link CharacterBuffer.Amount#persistent()} builder method.
+ *
+ * <p>
+ * <b>Example:</b><br>
+ * Editing a document with undo and redo:
+ * </p>
+ *
+ * <pre>
+ * PersistentCharacterBuffer document = CharacterBuffer.with(16).kilo().persistent().chars();
+ * document.append(text).snapshot();
+ * document.insert(42, "edited").snapshot();
+ * document.undo(); // back to the text
+ * document.redo(); // the edit again
+ * </pre>
+ *
+ * <p>
+ * <b>Hint:</b> This class is not thread safe, but a {@link Snapshot} never changes, so it can be read by many threads at the same time without any synchronization.
+ * </p>
+ *
+ * @author Ricardo Artur Staroski
+ */
+public final class PersistentCharacterBuffer implements Appendable, CharSequence {
+
+    /**
+     * Inner node of the tree, that concatenates two subtrees whose heights differ by one at most.
+     */
+    private static final class Branch extends Node {
+
+        private final Node left;
+        private final Node right;
+
+        private Branch(Node left, Node right) {
+            super(left.length + right.length, Math.max(left.height, right.height) + 1);
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /**
+     * Leaf of the tree, a slice of a memory page.
+     */
+    private static final class Leaf extends Node {
+
+        private final Page page;
+        private final int offset;
+
+        private Leaf(Page page, int offset, int length) {
+            super(length, 0);
+            this.page = page;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Node of the tree, it is never changed after it is created.
+     */
+    private static abstract class Node {
+
+        final int length;
+        final int height;
+
+        Node(int length, int height) {
+            this.length = length;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Memory page of the leaves, the characters before {@code used} never change, so they are shared by all the versions,
+     * and the buffer that owns the page may still write after them, what no version can read.
+     */
+    private static final class Page {
+
+        private final PersistentCharacterBuffer owner;
+        private final char[] chars;
+        private int used;
+
+        private Page(PersistentCharacterBuffer owner, int capacity) {
+            this.owner = owner;
+            this.chars = new char[capacity];
+        }
+    }
+
+    /**
+     * An immutable version of a {@link PersistentCharacterBuffer}, see {@link PersistentCharacterBuffer#snapshot()}.<br>
+     * It shares the memory pages of the buffer, so creating it copies nothing.
+     */
+    public static final class Snapshot implements CharSequence {
+
+        private final Node root;
+
+        /**
+         * Private constructor, the snapshots are created by the {@link PersistentCharacterBuffer}.
+         */
+        private Snapshot(Node root) {
+            this.root = root;
+        }
+
+        @Override
+        public final char charAt(int index) {
+            if (index < 0 || index >= length()) {
+                throw new IndexOutOfBoundsException("index: " + index + ", length: " + length());
+            }
+            return PersistentCharacterBuffer.charAt(root, index);
+        }
+
+        /**
+         * Visits all the characters of this {@link Snapshot} as runs of {@code char}s, one for each slice of a memory page.
+         *
+         * @param consumer
+         *            the {@link ChunkConsumer} that receives each run.
+         */
+        public final void forEachChunk(ChunkConsumer consumer) {
+            PersistentCharacterBuffer.forEachChunk(root, 0, length(), consumer);
+        }
+
+        @Override
+        public final int length() {
+            return root == null ? 0 : root.length;
+        }
+
+        /**
+         * Returns a {@link Snapshot} that is a subsequence of this one, it shares the same memory pages, so no character is copied.
+         *
+         * @param start
+         *            the start index, inclusive.
+         *
+         * @param end
+         *            the end index, exclusive.
+         *
+         * @return a {@link Snapshot} with the specified subsequence.
+         */
+        @Override
+        public final Snapshot subSequence(int start, int end) {
+            if (start < 0 || end > length() || start > end) {
+                throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length());
+            }
+            return new Snapshot(split(split(root, end)[0], start)[1]);
+        }
+
+        @Override
+        public final String toString() {
+            return PersistentCharacterBuffer.toString(root);
+        }
+    }
+
+    /*
+     * Length up to which two adjacent slices of different memory pages are copied into a single page, so that many small edits do not fragment the tree.
+     */
+    private static final int MIN_PAGE_SIZE = 64;
+
+    /**
+     * Returns the tree with the subtrees of its left and right children balanced by a single or a double rotation, when their heights differ by two.
+     */
+    private static final Node balance(Node left, Node right) {
+        if (left.height > right.height + 1) {
+            Branch branch = (Branch) left;
+            if (branch.left.height >= branch.right.height) {
+                return new Branch(branch.left, new Branch(branch.right, right));
+            }
+            Branch middle = (Branch) branch.right;
+            return new Branch(new Branch(branch.left, middle.left), new Branch(middle.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Branch branch = (Branch) right;
+            if (branch.right.height >= branch.left.height) {
+                return new Branch(new Branch(left, branch.left), branch.right);
+            }
+            Branch middle = (Branch) branch.left;
+            return new Branch(new Branch(left, middle.left), new Branch(middle.right, branch.right));
+        }
+        return new Branch(left, right);
+    }
+
+    /**
+     * Returns a balanced tree of the specified leaves.
+     */
+    private static final Node build(List<Leaf> leaves, int from, int to) {
+        if (to - from == 1) {
+            return leaves.get(from);
+        }
+        int middle = (from + to) >>> 1;
+        return new Branch(build(leaves, from, middle), build(leaves, middle, to));
+    }
+
+    private static final char charAt(Node node, int index) {
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            if (index < branch.left.length) {
+                node = branch.left;
+            } else {
+                index -= branch.left.length;
+                node = branch.right;
+            }
+        }
+        Leaf leaf = (Leaf) node;
+        return leaf.page.chars[leaf.offset + index];
+    }
+
+    private static final void copy(CharSequence text, int start, int end, char[] chars, int offset) {
+        if (text instanceof String) {
+            ((String) text).getChars(start, end, chars, offset);
+        } else {
+            for (int i = start; i < end; i++) {
+                chars[offset++] = text.charAt(i);
+            }
+        }
+    }
+
+    private static final Leaf firstLeaf(Node node) {
+        while (node instanceof Branch) {
+            node = ((Branch) node).left;
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Visits the characters from {@code start} to {@code end} of the tree as runs of {@code char}s, one for each slice of a memory page.
+     */
+    private static final void forEachChunk(Node node, int start, int end, ChunkConsumer consumer) {
+        if (start >= end) {
+            return;
+        }
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            consumer.accept(leaf.page.chars, leaf.offset + start, end - start);
+            return;
+        }
+        Branch branch = (Branch) node;
+        int middle = branch.left.length;
+        if (start < middle) {
+            forEachChunk(branch.left, start, Math.min(end, middle), consumer);
+        }
+        if (end > middle) {
+            forEachChunk(branch.right, Math.max(start - middle, 0), end - middle, consumer);
+        }
+    }
+
+    /**
+     * Returns the balanced concatenation of both trees, only the nodes along the junction are created.
+     */
+    private static final Node join(Node left, Node right) {
+        if (left == null || right == null) {
+            return left == null ? right : left;
+        }
+        if (left.height > right.height + 1) {
+            Branch branch = (Branch) left;
+            return balance(branch.left, join(branch.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Branch branch = (Branch) right;
+            return balance(join(left, branch.left), branch.right);
+        }
+        return new Branch(left, right);
+    }
+
+    private static final Leaf lastLeaf(Node node) {
+        while (node instanceof Branch) {
+            node = ((Branch) node).right;
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Returns a copy of the path down to the last leaf of the tree, with the specified leaf in its place.
+     */
+    private static final Node replaceLast(Node node, Leaf leaf) {
+        if (node instanceof Leaf) {
+            return leaf;
+        }
+        Branch branch = (Branch) node;
+        return new Branch(branch.left, replaceLast(branch.right, leaf));
+    }
+
+    /**
+     * Splits the tree at the specified index, the slices are shared, so no character is copied.
+     *
+     * @return the trees before and after the index, {@code null} for an empty tree.
+     */
+    private static final Node[] split(Node node, int index) {
+        if (node == null || index <= 0) {
+            return new Node[] { null, node };
+        }
+        if (index >= node.length) {
+            return new Node[] { node, null };
+        }
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            return new Node[] { new Leaf(leaf.page, leaf.offset, index), new Leaf(leaf.page, leaf.offset + index, leaf.length - index) };
+        }
+        Branch branch = (Branch) node;
+        int middle = branch.left.length;
+        if (index == middle) {
+            return new Node[] { branch.left, branch.right };
+        }
+        Node[] parts;
+        if (index < middle) {
+            parts = split(branch.left, index);
+            parts[1] = join(parts[1], branch.right);
+        } else {
+            parts = split(branch.right, index - middle);
+            parts[0] = join(branch.left, parts[0]);
+        }
+        return parts;
+    }
+
+    private static final String toString(Node node) {
+        if (node == null) {
+            return "";
+        }
+        char[] chars = new char[node.length];
+        int[] position = new int[1];
+        forEachChunk(node, 0, node.length, (page, offset, length) -> {
+            System.arraycopy(page, offset, chars, position[0], length);
+            position[0] += length;
+        });
+        return new String(chars);
+    }
+
+    private final int pageSize;
+    private Node root;
+
+    private final List<Snapshot> versions = new ArrayList<Snapshot>();
+    private int version = -1;
+
+    /**
+     * Package-private constructor, see {@link CharacterBuffer.Amount#persistent()} method.
+     */
+    PersistentCharacterBuffer(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Appends the specified {@code char} to this {@link PersistentCharacterBuffer}.<br>
+     * The {@code char} is written in place after the last one while its memory page has room, so only the path down to the last slice is created.
+     *
+     * @param value
+     *            the {@code char} to append.
+     *
+     * @return a reference to this object.
+     */
+    @Override
+    public final PersistentCharacterBuffer append(char value) {
+        Page page;
+        if (root != null) {
+            Leaf last = lastLeaf(root);
+            page = last.page;
+            if (page.owner == this && page.used < page.chars.length && last.offset + last.length == page.used) {
+                page.chars[page.used++] = value;
+                root = replaceLast(root, new Leaf(page, last.offset, last.length + 1));
+                return this;
+            }
+        }
+        page = new Page(this, pageSize);
+        page.chars[0] = value;
+        page.used = 1;
+        root = join(root, new Leaf(page, 0, 1));
+        return this;
+    }
+
+    /**
+     * Appends the specified {@code CharSequence} to this {@link PersistentCharacterBuffer}.<br>
+     * The characters are written after the last ones, in the same memory page while it has room, so appending copies nothing but the new characters.
+     *
+     * @param text
+     *            the {@code CharSequence} to append.
+     *
+     * @return a reference to this object.
+     */
+    @Override
+    public final PersistentCharacterBuffer append(CharSequence text) {
+        return insert(length(), text);
+    }
+
+    /**
+     * Appends a subsequence of the specified {@code CharSequence} to this {@link PersistentCharacterBuffer}.
+     *
+     * @param text
+     *            the {@code CharSequence} to append.
+     *
+     * @param start
+     *            the starting index of the subsequence to append.
+     *
+     * @param end
+     *            the end index of the subsequence to append.
+     *
+     * @return a reference to this object.
+     */
+    @Override
+    public final PersistentCharacterBuffer append(CharSequence text, int start, int end) {
+        if (text == null) {
+            text = "null";
+        }
+        if (start < 0 || start > end || end > text.length()) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + text.length());
+        }
+        root = write(root, text, start, end, true);
+        return this;
+    }
+
+    @Override
+    public final char charAt(int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length());
+        }
+        return charAt(root, index);
+    }
+
+    /**
+     * Forgets all the versions recorded by {@link #snapshot()}, so that they can be garbage collected, the content is kept.
+     */
+    public final void clearHistory() {
+        versions.clear();
+        version = -1;
+    }
+
+    /**
+     * Removes the characters in a substring of this {@link PersistentCharacterBuffer}, only the tree path down to both ends is created, no character is moved.
+     *
+     * @param start
+     *            the beginning index, inclusive.
+     *
+     * @param end
+     *            the ending index, exclusive, it is limited to the length.
+     *
+     * @return a reference to this object.
+     */
+    public final PersistentCharacterBuffer delete(int start, int end) {
+        if (start < 0 || start > end || start > length()) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length());
+        }
+        Node[] after = split(root, end);
+        Node[] before = split(after[0], start);
+        root = concat(before[0], after[1]);
+        return this;
+    }
+
+    /**
+     * Visits all the characters of this {@link PersistentCharacterBuffer} as runs of {@code char}s, one for each slice of a memory page.
+     *
+     * @param consumer
+     *            the {@link ChunkConsumer} that receives each run.
+     */
+    public final void forEachChunk(ChunkConsumer consumer) {
+        forEachChunk(root, 0, length(), consumer);
+    }
+
+    /**
+     * Inserts the specified {@code CharSequence} to this {@link PersistentCharacterBuffer} at the specified index.<br>
+     * Only the tree path down to the index and the memory page of the inserted characters are created, the characters after the index are not moved.
+     *
+     * @param index
+     *            position at which to insert.
+     *
+     * @param text
+     *            the {@code CharSequence} to insert.
+     *
+     * @return a reference to this object.
+     */
+    public final PersistentCharacterBuffer insert(int index, CharSequence text) {
+        if (index < 0 || index > length()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length());
+        }
+        if (text == null) {
+            text = "null";
+        }
+        if (index == length()) {
+            root = write(root, text, 0, text.length(), true);
+        } else {
+            Node[] parts = split(root, index);
+            root = concat(write(parts[0], text, 0, text.length(), false), parts[1]);
+        }
+        return this;
+    }
+
+    @Override
+    public final int length() {
+        return root == null ? 0 : root.length;
+    }
+
+    /**
+     * Restores the version that was undone by the last {@link #undo()}.<br>
+     * The versions that were undone are discarded by the next {@link #snapshot()} after a change.
+     *
+     * @return {@code true} if a version was redone, {@code false} if there is none or this {@link PersistentCharacterBuffer} was changed after the undo.
+     */
+    public final boolean redo() {
+        if (version < 0 || version == versions.size() - 1 || versions.get(version).root != root) {
+            return false;
+        }
+        root = versions.get(++version).root;
+        return true;
+    }
+
+    /**
+     * Restores the content of the specified {@link Snapshot}, in {@code O(1)}, the recorded versions are not changed.
+     *
+     * @param snapshot
+     *            the {@link Snapshot} to restore.
+     *
+     * @return a reference to this object.
+     */
+    public final PersistentCharacterBuffer restore(Snapshot snapshot) {
+        root = snapshot.root;
+        return this;
+    }
+
+    /**
+     * Records the current content as a new version and returns it, in {@code O(1)}, since the {@link Snapshot} only references the current tree.<br>
+     * The versions that were undone are discarded, the same way a text editor discards them after a change.
+     *
+     * @return a {@link Snapshot} of the current content.
+     */
+    public final Snapshot snapshot() {
+        if (version >= 0 && versions.get(version).root == root) {
+            return versions.get(version);
+        }
+        versions.subList(version + 1, versions.size()).clear();
+        versions.add(new Snapshot(root));
+        return versions.get(++version);
+    }
+
+    /**
+     * Returns a {@link Snapshot} that is a subsequence of this {@link PersistentCharacterBuffer}, it shares the same memory pages, so no character is copied.
+     *
+     * @param start
+     *            the start index, inclusive.
+     *
+     * @param end
+     *            the end index, exclusive.
+     *
+     * @return a {@link Snapshot} with the specified subsequence.
+     */
+    @Override
+    public final Snapshot subSequence(int start, int end) {
+        return new Snapshot(root).subSequence(start, end);
+    }
+
+    @Override
+    public final String toString() {
+        return toString(root);
+    }
+
+    /**
+     * Restores the previous version recorded by {@link #snapshot()}.<br>
+     * The changes made after the last {@link #snapshot()} are recorded as a new version first, so that they can be {@link #redo() redone}.
+     *
+     * @return {@code true} if a version was undone, {@code false} if there is no previous version.
+     */
+    public final boolean undo() {
+        if (version < 0) {
+            return false;
+        }
+        snapshot();
+        if (version < 1) {
+            return false;
+        }
+        root = versions.get(--version).root;
+        return true;
+    }
+
+    /**
+     * Returns the concatenation of both trees, the adjacent slices at the junction are merged when they are contiguous in the same memory page or when they are small.
+     */
+    private final Node concat(Node left, Node right) {
+        if (left == null || right == null) {
+            return left == null ? right : left;
+        }
+        Leaf last = lastLeaf(left);
+        Leaf first = firstLeaf(right);
+        Leaf merged;
+        if (last.page == first.page && last.offset + last.length == first.offset) {
+            merged = new Leaf(last.page, last.offset, last.length + first.length);
+        } else if (last.length + first.length <= Math.min(pageSize, MIN_PAGE_SIZE)) {
+            Page page = new Page(this, Math.min(pageSize, MIN_PAGE_SIZE));
+            System.arraycopy(last.page.chars, last.offset, page.chars, 0, last.length);
+            System.arraycopy(first.page.chars, first.offset, page.chars, last.length, first.length);
+            page.used = last.length + first.length;
+            merged = new Leaf(page, 0, page.used);
+        } else {
+            return join(left, right);
+        }
+        left = split(left, left.length - last.length)[0];
+        right = split(right, first.length)[1];
+        return join(join(left, merged), right);
+    }
+
+    /**
+     * Returns the tree with the characters from {@code start} to {@code end} of the {@code CharSequence} after its last character.<br>
+     * The characters are written in place after the last slice when it ends at the used part of a memory page of this buffer, so only the path down to it is created,
+     * the remaining characters go to new memory pages, that have the page size at the tail of the buffer, and just the needed size elsewhere.
+     */
+    private final Node write(Node node, CharSequence text, int start, int end, boolean tail) {
+        if (start >= end) {
+            return node;
+        }
+        if (node != null) {
+            Leaf last = lastLeaf(node);
+            Page page = last.page;
+            int count = Math.min(end - start, page.chars.length - page.used);
+            if (count > 0 && page.owner == this && last.offset + last.length == page.used) {
+                copy(text, start, start + count, page.chars, page.used);
+                page.used += count;
+                node = replaceLast(node, new Leaf(page, last.offset, last.length + count));
+                start += count;
+            }
+        }
+        List<Leaf> leaves = new ArrayList<Leaf>();
+        while (start < end) {
+            int remaining = end - start;
+            Page page = new Page(this, tail || remaining >= pageSize ? pageSize : Math.min(pageSize, Math.max(MIN_PAGE_SIZE, remaining)));
+            int count = Math.min(page.chars.length, remaining);
+            copy(text, start, start + count, page.chars, 0);
+            page.used = count;
+            leaves.add(new Leaf(page, 0, count));
+            start += count;
+        }
+        return leaves.isEmpty() ? node : join(node, build(leaves, 0, leaves.size()));
+    }
+}
@@ -2,11 +2,37 @@ package br.com.staroski.text;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.MissingFormatArgumentException;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.UnknownFormatConversionException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -187,6 +213,33 @@ public class CharacterBufferTest {
 
     private static final int CHARACTER_COUNT = 10485760; // 10 M
 
+    @Test
+    public void testAdaptivePages() throws Exception {
+        CharacterBuffer actual = CharacterBuffer.with(64).adaptive(3).chars();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            actual.append((char) ('a' + i % 26));
+            expected.append((char) ('a' + i % 26));
+            Assert.assertEquals("append(char) into adaptive pages", expected.toString(), actual.toString());
+        }
+        actual.deleteAll();
+        expected.setLength(0);
+        for (int i = 0; i < 40; i++) {
+            actual.append("x" + i);
+            expected.append("x" + i);
+            Assert.assertEquals("append(CharSequence) into adaptive pages", expected.toString(), actual.toString());
+        }
+        actual.delete(0, expected.length() - 5).insert(2, "inserted").append("appended");
+        expected.delete(0, expected.length() - 5).insert(2, "inserted").append("appended");
+        Assert.assertEquals("insert/delete on the adaptive first page", expected.toString(), actual.toString());
+
+        String text = "ol\u00e1 \u4e2d\u6587 " + expected;
+        CharacterBuffer read = CharacterBuffer.with(64).adaptive(2).chars().readFrom(Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))), StandardCharsets.UTF_8);
+        Assert.assertEquals("readFrom(ReadableByteChannel, Charset) into adaptive pages", text, read.toString());
+
+        checkColdPages(CharacterBuffer.with(64).adaptive(1).compress(2).chars());
+    }
+
     @Test
     public void testAppendBoolean() throws IOException {
         Objects objects = new Objects();
@@ -289,6 +342,33 @@ public class CharacterBufferTest {
         objects.checkToString();
     }
 
+    @Test
+    public void testAppendEscaped() {
+        CharacterBuffer buffer = CharacterBuffer.with(4).chars();
+        buffer.appendJsonEscaped("plain text").append('|').appendJsonEscaped("\"quoted\" \\ \b\f\n\r\t \u0001 \u001f \u2028 \u00e9");
+        Assert.assertEquals("appendJsonEscaped()", "plain text|\\\"quoted\\\" \\\\ \\b\\f\\n\\r\\t \\u0001 \\u001f \\u2028 \u00e9", buffer.toString());
+
+        buffer = CharacterBuffer.with(4).chars();
+        buffer.appendXmlEscaped(new StringBuilder("plain text")).append('|').appendXmlEscaped(CharBuffer.wrap("<a href=\"x\">Tom & Jerry's</a>"));
+        Assert.assertEquals("appendXmlEscaped()", "plain text|&lt;a href=&quot;x&quot;&gt;Tom &amp; Jerry&#39;s&lt;/a&gt;", buffer.toString());
+
+        buffer = CharacterBuffer.with(4).chars();
+        buffer.appendCsvField("plain").append(',')
+              .appendCsvField("a,b").append(',')
+              .appendCsvField("say \"hi\"").append(',')
+              .appendCsvField("\"").append(',')
+              .appendCsvField("two\nlines").append(',')
+              .appendCsvField(null).append(',')
+              .appendCsvField("").append(',')
+              .appendCsvField("a;b", ';');
+        Assert.assertEquals("appendCsvField()", "plain,\"a,b\",\"say \"\"hi\"\"\",\"\"\"\",\"two\nlines\",,,\"a;b\"", buffer.toString());
+
+        CharacterBuffer source = CharacterBuffer.with(4).chars().append("a<b&c");
+        Assert.assertEquals("appendXmlEscaped(CharacterBuffer)", "a&lt;b&amp;c", CharacterBuffer.with(4).chars().appendXmlEscaped(source).toString());
+        Assert.assertEquals("append(self)", "a<b&ca<b&c", source.append(source).toString());
+        Assert.assertEquals("append(CharSequence, start, end)", "b&ca", CharacterBuffer.with(4).chars().append(source, 2, 6).toString());
+    }
+
     @Test
     public void testAppendFloat() throws IOException {
         Objects objects = new Objects();
@@ -345,6 +425,41 @@ public class CharacterBufferTest {
         objects.checkToString();
     }
 
+    @Test
+    public void testCapacity() throws IOException {
+        CharacterBufferStats stats = new CharacterBufferStats();
+        CharacterBuffer actual = CharacterBuffer.with(16).stats(stats).chars();
+        Assert.assertEquals("capacity() of a new buffer", 16, actual.capacity());
+
+        actual.ensureCapacity(100);
+        Assert.assertEquals("capacity() after ensureCapacity(100)", 112, actual.capacity());
+        long allocations = stats.getPageAllocations();
+        for (int i = 0; i < 100; i++) {
+            actual.append('x');
+        }
+        Assert.assertEquals("pageAllocations while appending up to the ensured capacity", allocations, stats.getPageAllocations());
+
+        actual.ensureCapacity(1000);
+        actual.trimToSize();
+        Assert.assertEquals("capacity() after trimToSize()", 112, actual.capacity());
+        Assert.assertEquals("length() after trimToSize()", 100, actual.length());
+        actual.delete(20, 100);
+        Assert.assertEquals("capacity() after delete()", 112, actual.capacity());
+        actual.setLength(10);
+        Assert.assertEquals("capacity() after setLength()", 112, actual.capacity());
+        actual.trimToSize();
+        Assert.assertEquals("capacity() after truncating and trimToSize()", 16, actual.capacity());
+
+        CharacterBuffer adaptive = CharacterBuffer.with(64).adaptive(4).chars().append("abcdefghij");
+        Assert.assertEquals("capacity() of the adaptive first page", 16, adaptive.capacity());
+        adaptive.trimToSize();
+        Assert.assertEquals("capacity() of the adaptive first page after trimToSize()", 11, adaptive.capacity());
+        adaptive.ensureCapacity(40);
+        Assert.assertEquals("capacity() of the adaptive first page after ensureCapacity(40)", 41, adaptive.capacity());
+        adaptive.append("klmnopqrstuvwxyz");
+        Assert.assertEquals("toString() after trimToSize() and ensureCapacity()", "abcdefghijklmnopqrstuvwxyz", adaptive.toString());
+    }
+
     @Test
     public void testCharAt() throws IOException {
         Objects objects = new Objects();
@@ -352,6 +467,224 @@ public class CharacterBufferTest {
         objects.checkCharAt(10);
     }
 
+    @Test
+    public void testChars() throws IOException {
+        Objects objects = new Objects();
+        objects.fill(CHARACTER_COUNT);
+        objects.append("Hello World");
+
+        int[] expected = objects.c.toString().chars().toArray();
+        Assert.assertArrayEquals("chars()", expected, objects.a.chars().toArray());
+        Assert.assertArrayEquals("chars().parallel()", expected, objects.b.chars().parallel().toArray());
+        Assert.assertEquals("chars().parallel().count()", expected.length, objects.a.chars().parallel().filter(c -> c == 'X').count() + 11);
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        int before = spillFiles();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            expected.append((char) ('a' + i % 26));
+        }
+        CharacterBuffer buffer = CharacterBuffer.with(64).maxHeap(512).chars().append(expected);
+        if (Files.isDirectory(Paths.get("/proc/self/fd"))) {
+            Assert.assertEquals("spill file while spilling", before + 1, spillFiles());
+        }
+        buffer.close();
+        Assert.assertEquals("spill file after close()", before, spillFiles());
+        Assert.assertEquals("length() after close()", 0, buffer.length());
+
+        buffer.append(expected);
+        Assert.assertEquals("toString() after close()", expected.toString(), buffer.toString());
+        buffer.setLength(0);
+        Assert.assertEquals("spill file after setLength(0)", before, spillFiles());
+        buffer.append(expected).deleteAll();
+        Assert.assertEquals("spill file after deleteAll()", before, spillFiles());
+    }
+
+    @Test
+    public void testCloseKeepsContent() {
+        String expected = "the quick brown fox jumps over the lazy dog";
+        CharacterBuffer buffer = CharacterBuffer.with(8).chars().append(expected);
+        buffer.close();
+        Assert.assertEquals("toString() after close()", expected, buffer.toString());
+        buffer = CharacterBuffer.with(8).maxHeap(1024).chars().append(expected);
+        buffer.close();
+        Assert.assertEquals("toString() after close() without spilled pages", expected, buffer.toString());
+    }
+
+    @Test
+    public void testCodePoints() {
+        String text = "a\ud83d\ude00bc\ud83d\ude01\ud83d\ude02d\ud83d\ude03";
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            expected.append(text);
+        }
+        expected.append('\ud83d');
+        for (int pageSize = 1; pageSize <= 5; pageSize++) {
+            CharacterBuffer actual = CharacterBuffer.with(pageSize).chars().append(expected);
+            Assert.assertArrayEquals("codePoints() page size " + pageSize, expected.codePoints().toArray(), actual.codePoints().toArray());
+            Assert.assertArrayEquals("codePoints().parallel() page size " + pageSize, expected.codePoints().toArray(), actual.codePoints().parallel().toArray());
+        }
+    }
+
+    @Test
+    public void testColdPagesLeastRecentlyUsed() {
+        CharacterBufferStats stats = new CharacterBufferStats();
+        CharacterBuffer buffer = CharacterBuffer.with(8).compress(2).stats(stats).chars();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 80; i++) {
+            expected.append((char) ('a' + i % 26));
+        }
+        buffer.append(expected);
+        stats.reset();
+        for (int page = 1; page < 10; page++) {
+            Assert.assertEquals("charAt() of the page read often", expected.charAt(0), buffer.charAt(0));
+            Assert.assertEquals("charAt() of page " + page, expected.charAt(page * 8), buffer.charAt(page * 8));
+        }
+        // the first page is loaded once and kept hot, each other page is loaded once
+        Assert.assertEquals("cold page loads", 10, stats.getColdPageLoads());
+        Assert.assertEquals("toString() of cold pages", expected.toString(), buffer.toString());
+    }
+
+    @Test
+    public void testCompareToLexicographically() {
+        String[] texts = new String[] { "", "a", "ab", "abc", "abd", "b", "Hello World", "Hello", "Hello Wor1d", "\u00e9" };
+        for (String x : texts) {
+            for (String y : texts) {
+                CharacterBuffer buffer = CharacterBuffer.with(2).chars().append(x);
+                CharacterBuffer other = CharacterBuffer.with(3).chars().append(y);
+                int expected = Integer.signum(x.compareTo(y));
+                Assert.assertEquals("compareToLexicographically(String) '" + x + "' '" + y + "'", expected, Integer.signum(buffer.compareToLexicographically(y)));
+                Assert.assertEquals("compareToLexicographically(CharacterBuffer) '" + x + "' '" + y + "'", expected, Integer.signum(buffer.compareToLexicographically(other)));
+                if (x.length() == y.length()) {
+                    Assert.assertEquals("compareTo(CharSequence) '" + x + "' '" + y + "'", expected, Integer.signum(buffer.compareTo(other)));
+                } else {
+                    Assert.assertEquals("compareTo(CharSequence) '" + x + "' '" + y + "'", Integer.signum(x.length() - y.length()), Integer.signum(buffer.compareTo(other)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCompressedPages() throws Exception {
+        checkColdPages(CharacterBuffer.with(64).compress(2).chars());
+    }
+
+    @Test
+    public void testContentEquals() throws IOException {
+        Objects objects = new Objects();
+        objects.fill(CHARACTER_COUNT);
+        objects.append("Hello World");
+
+        Assert.assertTrue("contentEquals(CharacterBuffer) with different page sizes", objects.a.contentEquals(objects.b));
+        Assert.assertTrue("contentEquals(StringBuilder)", objects.a.contentEquals(objects.c));
+        Assert.assertTrue("contentEquals(String)", objects.a.contentEquals(objects.d.toString()));
+        Assert.assertTrue("equals(Object)", objects.a.equals(objects.b));
+
+        objects.b.deleteCharAt(CHARACTER_COUNT);
+        objects.b.insert(CHARACTER_COUNT, 'h');
+        Assert.assertFalse("contentEquals(CharacterBuffer) with same length", objects.a.contentEquals(objects.b));
+        Assert.assertFalse("equals(Object) with same length", objects.a.equals(objects.b));
+        Assert.assertFalse("contentEquals(String) with different length", objects.a.contentEquals("Hello World"));
+    }
+
+    @Test
+    public void testCopyTo() throws IOException {
+        Objects objects = new Objects();
+        objects.fill(CHARACTER_COUNT);
+        String expected = objects.c.toString();
+
+        CharBuffer heap = CharBuffer.allocate(expected.length() + 2);
+        heap.put('[');
+        objects.a.copyTo(heap).put(']');
+        Assert.assertEquals("copyTo(CharBuffer) heap", "[" + expected + "]", heap.flip().toString());
+
+        CharBuffer direct = ByteBuffer.allocateDirect(expected.length() * 2).asCharBuffer();
+        objects.b.copyTo(direct);
+        Assert.assertEquals("copyTo(CharBuffer) direct position", expected.length(), direct.position());
+        Assert.assertEquals("copyTo(CharBuffer) direct", expected, direct.flip().toString());
+
+        try {
+            objects.a.copyTo(CharBuffer.allocate(expected.length() - 1));
+            Assert.fail("copyTo(CharBuffer) without enough space");
+        } catch (BufferOverflowException e) {
+            // expected
+        }
+
+        CharacterBuffer target = CharacterBuffer.with(1000).chars().append("prefix");
+        objects.a.copyTo(target);
+        Assert.assertEquals("copyTo(CharacterBuffer)", "prefix" + expected, target.toString());
+
+        CharacterBuffer itself = CharacterBuffer.with(7).chars().append("Hello World");
+        itself.copyTo(itself);
+        Assert.assertEquals("copyTo(CharacterBuffer) itself", "Hello WorldHello World", itself.toString());
+    }
+
+    @Test
+    public void testDeduplication() {
+        Random random = new Random(50);
+        StringBuilder content = new StringBuilder();
+        while (content.length() < 100) {
+            content.append((char) ('a' + random.nextInt(26)));
+        }
+        String text = content.toString();
+        CharacterBufferStats stats = new CharacterBufferStats();
+        CharacterBuffer first = CharacterBuffer.with(8).deduplicate().stats(stats).chars().append(text);
+        // the intern table is shared by the whole JVM, so the pages of the first buffer may still be interned by a previous run of this test
+        long hits = stats.getDeduplicationHits();
+        long misses = stats.getDeduplicationMisses();
+        Assert.assertEquals("first buffer full pages", 12, hits + misses);
+
+        CharacterBuffer second = CharacterBuffer.with(8).deduplicate().stats(stats).chars();
+        for (int i = 0; i < text.length(); i++) {
+            second.append(text.charAt(i));
+        }
+        Assert.assertEquals("second buffer hits", hits + 12, stats.getDeduplicationHits());
+        Assert.assertEquals("second buffer misses", misses, stats.getDeduplicationMisses());
+        Assert.assertEquals("deduplication hit bytes", (hits + 12) * 8 * 2, stats.getDeduplicationHitBytes());
+
+        second.setCharAt(3, '#');
+        second.insert(20, "<inserted>");
+        second.delete(50, 60);
+        second.reverse();
+        Assert.assertEquals("first buffer after changes to the second", text, first.toString());
+        StringBuilder expected = new StringBuilder(text);
+        expected.setCharAt(3, '#');
+        expected.insert(20, "<inserted>");
+        expected.delete(50, 60);
+        expected.reverse();
+        Assert.assertEquals("second buffer after changes", expected.toString(), second.toString());
+
+        first.setLength(4);
+        first.append(text, 4, text.length());
+        Assert.assertEquals("first buffer rewritten", text, first.toString());
+        Assert.assertEquals("second buffer after changes to the first", expected.toString(), second.toString());
+        Assert.assertEquals("undeduplicated buffer", text, CharacterBuffer.with(8).chars().append(text).toString());
+    }
+
+    @Test
+    public void testDeduplicationConcurrent() {
+        Random random = new Random(51);
+        StringBuilder content = new StringBuilder();
+        while (content.length() < 1000) {
+            content.append((char) ('a' + random.nextInt(26)));
+        }
+        String text = content.toString();
+        CharacterBufferStats stats = new CharacterBufferStats();
+        List<CharacterBuffer> buffers = IntStream.range(0, 16).parallel() //
+                .mapToObj(i -> CharacterBuffer.with(8).deduplicate().stats(stats).chars().append(text)) //
+                .collect(Collectors.toList());
+        for (CharacterBuffer buffer : buffers) {
+            Assert.assertEquals("toString()", text, buffer.toString());
+        }
+        long hits = stats.getDeduplicationHits();
+        long misses = stats.getDeduplicationMisses();
+        Assert.assertEquals("full pages", 16 * 125, hits + misses);
+        // each distinct page is interned only once, no matter how many threads race for it
+        Assert.assertTrue("misses " + misses, misses <= 125);
+    }
+
     @Test
     public void testDeleteCharAtIndex() throws IOException {
         Objects objects = new Objects();
@@ -381,6 +714,187 @@ public class CharacterBufferTest {
         objects.checkToString();
     }
 
+    @Test
+    public void testForEachChunk() throws IOException {
+        Objects objects = new Objects();
+        objects.fill(CHARACTER_COUNT);
+        objects.append("Hello World");
+
+        final StringBuilder all = new StringBuilder();
+        objects.a.forEachChunk(new CharacterBuffer.ChunkConsumer() {
+
+            @Override
+            public void accept(char[] chars, int offset, int length) {
+                Assert.assertTrue("forEachChunk(ChunkConsumer) run length", length > 0 && length <= 8192);
+                all.append(chars, offset, length);
+            }
+        });
+        Assert.assertEquals("forEachChunk(ChunkConsumer)", objects.c.toString(), all.toString());
+
+        final StringBuilder range = new StringBuilder();
+        objects.b.forEachChunk(16380, CHARACTER_COUNT + 5, (chars, offset, length) -> range.append(chars, offset, length));
+        Assert.assertEquals("forEachChunk(int, int, ChunkConsumer)", objects.c.substring(16380, CHARACTER_COUNT + 5), range.toString());
+    }
+
+    @Test
+    public void testFormat() throws IOException {
+        Object[][] cases = {
+                { "plain text" },
+                { "%s and %s", "first", null },
+                { "%d %d %d %d %d", 0, -1, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE },
+                { "%c%c %b %b %b %b", 'o', 'k', null, true, Boolean.FALSE, "yes" },
+                { "%2$s %1$s %<s %s", "a", "b" },
+                { "100%% done%n" },
+                { "[%-8s|%8s|%08d|%,d|%+d|%x|%.3f|%10.2e]", "left", "right", 42, 1234567, 5, 255, Math.PI, 12345.678 },
+                { "%s %s %S", 42L, new StringBuilder("builder"), "upper" },
+                { "%c %s %d", (int) 'A', (short) 7, (byte) -8 },
+                { "%tY", new java.util.GregorianCalendar(2026, 9, 19) },
+                { "%5%|%-4%|" },
+        };
+        for (Object[] values : cases) {
+            String pattern = (String) values[0];
+            Object[] args = Arrays.copyOfRange(values, 1, values.length);
+            String expected = "prefix " + String.format(pattern, args);
+            Assert.assertEquals("format(\"" + pattern + "\")", expected, CharacterBuffer.with(4).chars().append("prefix ").format(pattern, args).toString());
+            CharacterBuffer.FormatPattern compiled = CharacterBuffer.FormatPattern.compile(pattern);
+            Assert.assertSame("FormatPattern.compile(\"" + pattern + "\") is cached", compiled, CharacterBuffer.FormatPattern.compile(pattern));
+            Assert.assertEquals("format(FormatPattern \"" + pattern + "\")", expected, CharacterBuffer.with(4).chars().append("prefix ").format(compiled, args).toString());
+        }
+        Assert.assertEquals("format() with null arguments", String.format("%s %b", (Object[]) null), CharacterBuffer.with(4).chars().format("%s %b", (Object[]) null).toString());
+
+        try {
+            CharacterBuffer.with(4).chars().format("%s %s", "only one");
+            Assert.fail("format() with a missing argument");
+        } catch (MissingFormatArgumentException e) {
+            // expected
+        }
+        try {
+            CharacterBuffer.FormatPattern.compile("%q");
+            Assert.fail("FormatPattern.compile() with an unknown conversion");
+        } catch (UnknownFormatConversionException e) {
+            // expected
+        }
+
+        // the cache evicts the least recently used patterns, one at a time
+        CharacterBuffer.FormatPattern recent = CharacterBuffer.FormatPattern.compile("recent %s");
+        CharacterBuffer.FormatPattern eldest = CharacterBuffer.FormatPattern.compile("eldest %s");
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertSame("recently used FormatPattern is kept", recent, CharacterBuffer.FormatPattern.compile("recent %s"));
+            CharacterBuffer.FormatPattern.compile("pattern " + i + " %s");
+        }
+        Assert.assertNotSame("least recently used FormatPattern is evicted", eldest, CharacterBuffer.FormatPattern.compile("eldest %s"));
+    }
+
+    @Test
+    public void testFreeze() throws Exception {
+        String original = "frozen text \u00e9\u4e2d shared with the buffer";
+        CharacterBuffer[] buffers = { CharacterBuffer.with(4).chars(), CharacterBuffer.with(8).adaptive(2).chars(), CharacterBuffer.with(4).compress(1).chars() };
+        for (CharacterBuffer buffer : buffers) {
+            buffer.append(original);
+            CharacterText text = buffer.freeze();
+            Assert.assertEquals("freeze()", original, text.toString());
+            Assert.assertEquals("hashCode()", original.hashCode(), text.hashCode());
+
+            buffer.append(" and more");
+            buffer.setCharAt(0, 'F');
+            buffer.insert(3, "<inserted>");
+            buffer.delete(20, 30);
+            buffer.reverse();
+            buffer.toUpperCase();
+            Assert.assertTrue("contentEquals() after changes", text.contentEquals(original));
+
+            CharacterText second = buffer.freeze();
+            String changed = buffer.toString();
+            buffer.reset().append("overwritten pages, after the reset of the buffer");
+            buffer.setLength(10);
+            buffer.append("appended again");
+            Assert.assertEquals("first freeze() after reset()", original, text.toString());
+            Assert.assertEquals("second freeze() after reset()", changed, second.toString());
+            Assert.assertEquals("buffer after freeze()", "overwritteappended again", buffer.toString());
+        }
+
+        CharacterText text = CharacterBuffer.with(4).chars().append(original).freeze();
+        Assert.assertEquals("length()", original.length(), text.length());
+        Assert.assertEquals("charAt()", original.charAt(13), text.charAt(13));
+        Assert.assertEquals("subSequence()", original.substring(7, 21), text.subSequence(7, 21).toString());
+        Assert.assertEquals("subSequence().hashCode()", original.substring(7, 21).hashCode(), text.subSequence(7, 21).hashCode());
+        Assert.assertEquals("subSequence().subSequence()", original.substring(9, 12), text.subSequence(7, 21).subSequence(2, 5).toString());
+        Assert.assertEquals("equals()", text, CharacterBuffer.with(16).chars().append(original).freeze());
+        Assert.assertNotEquals("equals()", text, CharacterBuffer.with(16).chars().append(original).append('!').freeze());
+        Assert.assertTrue("compareTo()", text.compareTo("frozen") > 0 && text.compareTo("frozen z") < 0 && text.compareTo(original) == 0);
+        Assert.assertEquals("append(CharacterText)", "[" + original + "]", CharacterBuffer.with(4).chars().append('[').append(text).append(']').toString());
+
+        char[] chars = new char[original.length() + 2];
+        text.getChars(0, text.length(), chars, 1);
+        Assert.assertEquals("getChars()", original, new String(chars, 1, original.length()));
+        StringBuilder chunks = new StringBuilder();
+        text.subSequence(3, 30).forEachChunk((page, offset, length) -> chunks.append(page, offset, length));
+        Assert.assertEquals("forEachChunk()", original.substring(3, 30), chunks.toString());
+
+        CharacterText deserialized = (CharacterText) new ObjectInputStream(new ByteArrayInputStream(serialize(text.subSequence(2, 25)))).readObject();
+        Assert.assertEquals("serialization", original.substring(2, 25), deserialized.toString());
+
+        StringBuilder latin1 = new StringBuilder();
+        while (latin1.length() < 10000) {
+            latin1.append("Latin-1 only: \u00e9\u00e7\u00ff ");
+        }
+        CharacterText compact = CharacterBuffer.with(64).chars().append(latin1).freeze().subSequence(5, 9005);
+        byte[] bytes = serialize(compact);
+        Assert.assertTrue("serialization of Latin-1 pages with 1 byte per char", bytes.length < 9000 + 1000);
+        deserialized = (CharacterText) new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+        Assert.assertEquals("serialization of Latin-1 pages", latin1.substring(5, 9005), deserialized.toString());
+    }
+
+    @Test
+    public void testGetChars() throws IOException {
+        Objects objects = new Objects();
+        objects.fill(CHARACTER_COUNT);
+        int start = CHARACTER_COUNT / 3;
+        int end = CHARACTER_COUNT - 5;
+
+        char[] expected = new char[end - start + 4];
+        char[] actual = new char[end - start + 4];
+        objects.c.getChars(start, end, expected, 2);
+        objects.a.getChars(start, end, actual, 2);
+        Assert.assertArrayEquals("getChars(int, int, char[], int)", expected, actual);
+
+        try {
+            objects.a.getChars(start, end, actual, 5);
+            Assert.fail("getChars(int, int, char[], int) past the end of the array");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            objects.a.getChars(start, CHARACTER_COUNT + 1, actual, 0);
+            Assert.fail("getChars(int, int, char[], int) past the end of the buffer");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testHashCode() throws IOException {
+        Objects objects = new Objects();
+        objects.fill(CHARACTER_COUNT);
+        Assert.assertEquals("hashCode() 16K", objects.c.toString().hashCode(), objects.a.hashCode());
+        Assert.assertEquals("hashCode() 32K", objects.c.toString().hashCode(), objects.b.hashCode());
+
+        objects.append("Hello World");
+        Assert.assertEquals("hashCode() after append", objects.c.toString().hashCode(), objects.a.hashCode());
+
+        objects.a.delete(3, 9);
+        objects.c.delete(3, 9);
+        Assert.assertEquals("hashCode() after delete", objects.c.toString().hashCode(), objects.a.hashCode());
+        Assert.assertEquals("hashCode() when empty", 0, CharacterBuffer.with(16).chars().hashCode());
+    }
+
+    @Test
+    public void testHeapBudget() throws Exception {
+        checkColdPages(CharacterBuffer.with(64).maxHeap(512).chars());
+        checkColdPages(CharacterBuffer.with(64).compress(8).maxHeap(512).chars());
+        checkColdPages(CharacterBuffer.with(64).maxHeap(1).kilo().chars());
+    }
+
     @Test
     public void testIndexOf() throws IOException {
         Objects objects = new Objects();
@@ -591,6 +1105,300 @@ public class CharacterBufferTest {
         objects.checkLength();
     }
 
+    @Test
+    public void testLineIndex() {
+        String[] texts = new String[] { "", "single", "a\nb", "a\r\nb\r\n", "a\rb\n\nc", "\n\r\n\r", "trailing\n" };
+        for (int pageSize = 1; pageSize <= 7; pageSize += 3) {
+            CharacterBuffer buffer = CharacterBuffer.with(pageSize).chars();
+            StringBuilder expected = new StringBuilder();
+            checkLineIndex(buffer, expected.toString());
+            for (String text : texts) {
+                for (int i = 0; i < text.length(); i++) {
+                    buffer.append(text.charAt(i));
+                    expected.append(text.charAt(i));
+                    checkLineIndex(buffer, expected.toString());
+                }
+                buffer.append(text).append("\r");
+                expected.append(text).append("\r");
+                checkLineIndex(buffer, expected.toString());
+            }
+            for (int index = expected.length(); index >= 0; index -= 3) {
+                buffer.insert(index, "\n");
+                expected.insert(index, "\n");
+                checkLineIndex(buffer, expected.toString());
+            }
+            while (expected.length() > 0) {
+                int start = expected.length() / 3;
+                int end = Math.min(expected.length(), start + 2);
+                buffer.delete(start, end);
+                expected.delete(start, end);
+                checkLineIndex(buffer, expected.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testLines() {
+        String[] texts = new String[] { "", "single", "a\nb", "a\r\nb\r\n", "a\rb\n\nc", "\n\r\n\r", "trailing\n" };
+        for (String text : texts) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 500; i++) {
+                builder.append(text).append(i).append("\r\n");
+            }
+            builder.append(text);
+            String all = builder.toString();
+            List<String> expected = new ArrayList<String>(Arrays.asList(all.split("\r\n|\r|\n", -1)));
+            if (all.isEmpty() || all.endsWith("\n") || all.endsWith("\r")) {
+                expected.remove(expected.size() - 1);
+            }
+            for (int pageSize = 1; pageSize <= 7; pageSize += 3) {
+                CharacterBuffer actual = CharacterBuffer.with(pageSize).chars().append(all);
+                Assert.assertEquals("lines() of '" + text + "'", expected, actual.lines().map(CharSequence::toString).collect(Collectors.toList()));
+                Assert.assertEquals("lines().parallel() of '" + text + "'", expected, actual.lines().parallel().map(CharSequence::toString).collect(Collectors.toList()));
+            }
+        }
+    }
+
+    @Test
+    public void testMismatch() throws IOException {
+        Objects objects = new Objects();
+        objects.fill(CHARACTER_COUNT);
+        objects.append("Hello World");
+
+        Assert.assertEquals("mismatch(CharacterBuffer) equal", -1, objects.a.mismatch(objects.b));
+        Assert.assertEquals("mismatch(StringBuilder) equal", -1, objects.a.mismatch(objects.c));
+
+        String text = objects.c.toString();
+        Assert.assertEquals("mismatch(String) equal", -1, objects.a.mismatch(text));
+        Assert.assertEquals("mismatch(String) prefix", text.length() - 1, objects.a.mismatch(text.substring(0, text.length() - 1)));
+        Assert.assertTrue("compareToLexicographically(String)", objects.a.compareToLexicographically(text.substring(0, CHARACTER_COUNT + 6) + "x") < 0);
+        char[] chars = ("[" + text + "]").toCharArray();
+        Assert.assertEquals("mismatch(char[]) equal", -1, objects.a.mismatch(chars, 1, text.length()));
+        Assert.assertEquals("mismatch(char[]) prefix", 5, objects.a.mismatch(chars, 1, 5));
+        chars[CHARACTER_COUNT + 7] = 'w';
+        Assert.assertEquals("mismatch(char[]) different", CHARACTER_COUNT + 6, objects.a.mismatch(chars, 1, text.length()));
+        try {
+            objects.a.mismatch(chars, 2, text.length() + 1);
+            Assert.fail("mismatch(char[]) out of the array");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+
+        objects.c.setCharAt(CHARACTER_COUNT + 6, 'w');
+        Assert.assertEquals("mismatch(StringBuilder) different", CHARACTER_COUNT + 6, objects.a.mismatch(objects.c));
+
+        objects.b.append('!');
+        Assert.assertEquals("mismatch(CharacterBuffer) prefix", objects.a.length(), objects.a.mismatch(objects.b));
+        Assert.assertEquals("mismatch(CharacterBuffer) prefix", objects.a.length(), objects.b.mismatch(objects.a));
+        Assert.assertEquals("mismatch(String) empty", 0, objects.a.mismatch(""));
+    }
+
+    @Test
+    public void testPersistent() {
+        PersistentCharacterBuffer document = CharacterBuffer.with(4).persistent().chars();
+        StringBuilder expected = new StringBuilder();
+        List<PersistentCharacterBuffer.Snapshot> snapshots = new ArrayList<PersistentCharacterBuffer.Snapshot>();
+        List<String> contents = new ArrayList<String>();
+        Random random = new Random(49);
+        for (int i = 0; i < 2000; i++) {
+            int index = random.nextInt(expected.length() + 1);
+            switch (random.nextInt(4)) {
+                case 0:
+                    document.append("line " + i + "\n");
+                    expected.append("line " + i + "\n");
+                    break;
+                case 1:
+                    document.insert(index, "<" + i + ">");
+                    expected.insert(index, "<" + i + ">");
+                    break;
+                case 2:
+                    int end = index + random.nextInt(8);
+                    document.delete(index, end);
+                    expected.delete(index, end);
+                    break;
+                default:
+                    document.append((char) ('a' + i % 26));
+                    expected.append((char) ('a' + i % 26));
+            }
+            snapshots.add(document.snapshot());
+            contents.add(expected.toString());
+        }
+        Assert.assertEquals("toString()", expected.toString(), document.toString());
+        for (int i = 0; i < snapshots.size(); i++) {
+            Assert.assertEquals("snapshot " + i, contents.get(i), snapshots.get(i).toString());
+        }
+        for (int i = 0; i < expected.length(); i += 7) {
+            Assert.assertEquals("charAt(" + i + ")", expected.charAt(i), document.charAt(i));
+        }
+        Assert.assertEquals("subSequence()", expected.substring(100, 300), document.subSequence(100, 300).toString());
+        Assert.assertEquals("restore()", contents.get(10), document.restore(snapshots.get(10)).toString());
+        StringBuilder chunks = new StringBuilder();
+        document.forEachChunk((chars, offset, length) -> chunks.append(chars, offset, length));
+        Assert.assertEquals("forEachChunk()", contents.get(10), chunks.toString());
+    }
+
+    @Test
+    public void testPersistentAppendChar() {
+        PersistentCharacterBuffer document = CharacterBuffer.with(8).persistent().bytes();
+        StringBuilder expected = new StringBuilder();
+        PersistentCharacterBuffer.Snapshot snapshot = null;
+        for (int i = 0; i < 100; i++) {
+            char value = (char) ('a' + i % 26);
+            document.append(value);
+            expected.append(value);
+            if (i == 41) {
+                snapshot = document.snapshot();
+            }
+        }
+        Assert.assertEquals("append(char)", expected.toString(), document.toString());
+        Assert.assertEquals("snapshot() after append(char)", expected.substring(0, 42), snapshot.toString());
+        document.restore(snapshot).append('!');
+        Assert.assertEquals("append(char) after restore()", expected.substring(0, 42) + "!", document.toString());
+        Assert.assertTrue("undo() after append(char)", document.undo());
+        Assert.assertEquals("undo() after append(char)", expected.substring(0, 42), document.toString());
+        try {
+            CharacterBuffer.with(1).persistent().bytes();
+            Assert.fail("persistent() with less than a char per page");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            CharacterBuffer.with(1).bytes();
+            Assert.fail("bytes() with less than a char per page");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPersistentUndoRedo() {
+        PersistentCharacterBuffer document = CharacterBuffer.with(16).persistent().chars();
+        Assert.assertFalse("undo() without versions", document.undo());
+        document.append("Hello World").snapshot();
+        document.insert(5, ",");
+        document.append('!');
+        Assert.assertTrue("undo()", document.undo());
+        Assert.assertEquals("undo()", "Hello World", document.toString());
+        Assert.assertFalse("undo() of the first version", document.undo());
+        Assert.assertTrue("redo()", document.redo());
+        Assert.assertEquals("redo()", "Hello, World!", document.toString());
+        Assert.assertFalse("redo() of the last version", document.redo());
+
+        document.undo();
+        document.delete(0, 6).append(" again");
+        Assert.assertFalse("redo() after a change", document.redo());
+        Assert.assertTrue("undo() after a change", document.undo());
+        Assert.assertEquals("undo() after a change", "Hello World", document.toString());
+        Assert.assertTrue("redo() after a change", document.redo());
+        Assert.assertEquals("redo() after a change", "World again", document.toString());
+
+        document.clearHistory();
+        Assert.assertFalse("undo() after clearHistory()", document.undo());
+        Assert.assertEquals("clearHistory() keeps the content", "World again", document.toString());
+    }
+
+    @Test
+    public void testReadFromChannel() throws IOException {
+        String text = "a\u00e9\u4e2d\ud83d\ude00b\ud83d\ude01\u00ff";
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            expected.append(text);
+        }
+        for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16 }) {
+            for (int pageSize = 1; pageSize <= 5; pageSize++) {
+                ByteArrayInputStream bis = new ByteArrayInputStream(expected.toString().getBytes(charset));
+                CharacterBuffer actual = CharacterBuffer.with(pageSize).chars().append("x");
+                actual.readFrom(Channels.newChannel(bis), charset);
+                Assert.assertEquals("readFrom(ReadableByteChannel, " + charset + ") page size " + pageSize, "x" + expected, actual.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testReadFromPath() throws IOException {
+        Objects objects = new Objects();
+        objects.fill(CHARACTER_COUNT);
+        objects.append("\u00e9\ud83d\ude00");
+
+        Path path = Files.createTempFile("CharacterBufferTest", ".txt");
+        try {
+            Files.write(path, objects.c.toString().getBytes(StandardCharsets.UTF_8));
+            CharacterBuffer actual = CharacterBuffer.with(16).kilo().bytes().readFrom(path, StandardCharsets.UTF_8);
+            Assert.assertEquals("readFrom(Path, Charset)", objects.c.toString(), actual.toString());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testRender() {
+        CharacterBuffer.Template template = CharacterBuffer.Template.compile("Hello ${name}, you owe ${amount}$$ since ${ year }, ${name}!");
+        Assert.assertEquals("Template.names()", Arrays.asList("name", "amount", "year"), template.names());
+        Assert.assertEquals("render()",
+                            "> Hello John, you owe -42$ since 2026, John!",
+                            CharacterBuffer.with(4).chars().append("> ").render(template, new StringBuilder("John"), -42L, 2026).toString());
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("name", 'J');
+        values.put("amount", 1.5);
+        values.put("year", null);
+        Assert.assertEquals("render(Map)", "Hello J, you owe 1.5$ since null, J!", CharacterBuffer.with(4).chars().render(template, values).toString());
+        Assert.assertEquals("render() without placeholders", "just $ text {}", CharacterBuffer.with(4).chars().render(CharacterBuffer.Template.compile("just $ text {}")).toString());
+
+        values.remove("year");
+        try {
+            CharacterBuffer.with(4).chars().render(template, values);
+            Assert.fail("render(Map) with a missing value");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            CharacterBuffer.with(4).chars().render(template, "John", 42);
+            Assert.fail("render() with a missing value");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            CharacterBuffer.Template.compile("Hello ${name");
+            Assert.fail("Template.compile() with an unclosed placeholder");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReset() throws IOException {
+        CharacterBufferStats stats = new CharacterBufferStats();
+        CharacterBuffer actual = CharacterBuffer.with(16).stats(stats).chars();
+        for (int request = 0; request < 5; request++) {
+            actual.reset();
+            Assert.assertEquals("length() after reset()", 0, actual.length());
+            for (int i = 0; i < 10; i++) {
+                actual.append("request ").append(request);
+            }
+            Assert.assertTrue("toString() after reset()", actual.toString().startsWith("request " + request + "request " + request));
+        }
+        Assert.assertEquals("pageAllocations of a reused buffer", 6, stats.getPageAllocations());
+    }
+
+    @Test
+    public void testReverse() throws Exception {
+        String text = "ab\uD83D\uDE00cd\uD801\uDC00e\uD83D\uDE01fgh\uDC00\uD800ij\uD83D\uDE02";
+        for (int pageSize = 1; pageSize <= 7; pageSize += 2) {
+            for (int length = 0; length <= text.length(); length++) {
+                String expected = new StringBuilder(text.substring(0, length)).reverse().toString();
+                CharacterBuffer actual = CharacterBuffer.with(pageSize).chars().append(text.substring(0, length));
+                Assert.assertEquals("reverse() of '" + text.substring(0, length) + "' with page size " + pageSize, expected, actual.reverse().toString());
+            }
+        }
+        CharacterBuffer cold = CharacterBuffer.with(4).compress(1).chars();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            cold.append(text).append(i);
+            expected.append(text).append(i);
+        }
+        Assert.assertEquals("reverse() of cold pages", expected.reverse().toString(), cold.reverse().toString());
+    }
+
     @Test
     public void testSerialization() throws Exception {
         CharacterBuffer expected = CharacterBuffer.with(16).kilo().bytes().append("Testing Serialization");
@@ -611,6 +1419,141 @@ public class CharacterBufferTest {
         Assert.assertEquals(expected, actual);
     }
 
+    @Test
+    public void testSerializationFormat1() throws Exception {
+        String text = "Testing the serial format 1";
+        byte[] current = serialize(CharacterBuffer.with(4).chars().append(text));
+
+        // the format 1 block data was: page size, size and the characters encoded with the platform's default charset
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(block);
+        data.writeInt(4);
+        data.writeInt(text.length());
+        data.write(text.getBytes());
+        data.close();
+
+        // replaces the current block data, that starts with the format number and ends at the end of the stream
+        int start = 0;
+        while (!(current[start] == 0x77 && current[start + 2] == -1 && current[start + 5] == -3)) {
+            start++;
+        }
+        ByteArrayOutputStream format1 = new ByteArrayOutputStream();
+        format1.write(current, 0, start);
+        format1.write(0x77);
+        format1.write(block.size());
+        format1.write(block.toByteArray());
+        format1.write(0x78);
+
+        CharacterBuffer actual = (CharacterBuffer) new ObjectInputStream(new ByteArrayInputStream(format1.toByteArray())).readObject();
+        Assert.assertEquals(text, actual.toString());
+        Assert.assertEquals(text + "!", actual.append('!').toString());
+    }
+
+    @Test
+    public void testSerializationOptions() throws Exception {
+        CharacterBuffer uncached = CharacterBuffer.with(8).toStringCache(CharacterBuffer.CachePolicy.NONE).chars().append("never cached");
+        CharacterBuffer actual = (CharacterBuffer) new ObjectInputStream(new ByteArrayInputStream(serialize(uncached))).readObject();
+        Assert.assertEquals("toString() after deserialization", uncached.toString(), actual.toString());
+        Assert.assertEquals("toString() again after deserialization", uncached.toString(), actual.toString());
+        Assert.assertEquals("toStringCacheHits() with the deserialized CachePolicy.NONE", 0, actual.toStringCacheHits());
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            expected.append((char) ('a' + i % 26));
+        }
+        int before = spillFiles();
+        CharacterBuffer budget = CharacterBuffer.with(64).maxHeap(512).chars().append(expected);
+        actual = (CharacterBuffer) new ObjectInputStream(new ByteArrayInputStream(serialize(budget))).readObject();
+        if (Files.isDirectory(Paths.get("/proc/self/fd"))) {
+            Assert.assertEquals("spill file of the deserialized heap budget", before + 2, spillFiles());
+        }
+        Assert.assertEquals("toString() of the deserialized heap budget", expected.toString(), actual.toString());
+        budget.close();
+        actual.close();
+        Assert.assertEquals("spill files after close()", before, spillFiles());
+    }
+
+    @Test
+    public void testSerializationPages() throws Exception {
+        String[] texts = new String[] { "", "abcd", "Latin-1 only: \u00e9\u00e7\u00ff", "UTF-16: \u4e2d\u6587 \ud83d\ude00 and Latin-1 again" };
+        for (String text : texts) {
+            for (int pageSize = 1; pageSize <= 8; pageSize++) {
+                CharacterBuffer expected = CharacterBuffer.with(pageSize).chars().append(text).append(text);
+                byte[] bytes = serialize(expected);
+                CharacterBuffer actual = (CharacterBuffer) new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+                Assert.assertEquals("serialization of '" + text + "' with page size " + pageSize, expected.toString(), actual.toString());
+                Assert.assertEquals("append after deserialization", expected.append("end").toString(), actual.append("end").toString());
+            }
+        }
+    }
+
+    @Test
+    public void testSetCharAt() throws IOException {
+        Objects objects = new Objects();
+        objects.append("Hello\r\nWorld");
+        for (int index : new int[] { 0, 5, 6, 11 }) {
+            objects.a.setCharAt(index, '_');
+            objects.b.setCharAt(index, '_');
+            objects.c.setCharAt(index, '_');
+            objects.d.setCharAt(index, '_');
+            objects.checkToString();
+        }
+        Assert.assertEquals("lineCount() after setCharAt()", 1, objects.a.lineCount());
+        objects.a.setCharAt(3, '\n');
+        Assert.assertEquals("lineCount() after setCharAt('\\n')", 2, objects.a.lineCount());
+        try {
+            objects.a.setCharAt(objects.a.length(), '_');
+            Assert.fail("setCharAt(int, char) past the end");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSetLength() throws Exception {
+        CharacterBuffer[] buffers = { CharacterBuffer.with(16).chars(), CharacterBuffer.with(16).adaptive(2).chars(), CharacterBuffer.with(16).compress(1).chars() };
+        for (CharacterBuffer actual : buffers) {
+            StringBuilder expected = new StringBuilder();
+            for (int length : new int[] { 50, 10, 32, 0, 17, 64, 48 }) {
+                actual.setLength(length);
+                expected.setLength(length);
+                Assert.assertEquals("setLength(" + length + ")", expected.toString(), actual.toString());
+                actual.append("appended after setLength");
+                expected.append("appended after setLength");
+                Assert.assertEquals("append() after setLength(" + length + ")", expected.toString(), actual.toString());
+                Assert.assertEquals("lineCount() after setLength(" + length + ")", 1, actual.lineCount());
+            }
+        }
+    }
+
+    @Test
+    public void testSplit() {
+        CharacterBuffer buffer = CharacterBuffer.with(4).chars().append("alpha,beta,,gamma delta,");
+        Assert.assertEquals("split(char)", Arrays.asList("alpha", "beta", "", "gamma delta", ""), tokens(buffer.split(',')));
+        Assert.assertEquals("split(char) reusing the view", Arrays.asList("alpha", "beta", "", "gamma delta", ""), tokens(buffer.split(',').reuseView()));
+        Assert.assertEquals("split(CharSequence)", Arrays.asList("alpha,b", "ta,,gamma d", "lta,"), tokens(buffer.split("e")));
+        Assert.assertEquals("split(CharSequence)", Arrays.asList("alpha,beta", "gamma delta,"), tokens(buffer.split(",,")));
+        Assert.assertEquals("split(CharSequence) without delimiter", Arrays.asList(buffer.toString()), tokens(buffer.split("<>")));
+        Assert.assertEquals("tokenize()", Arrays.asList("alpha", "beta", "gamma", "delta"), tokens(buffer.tokenize(c -> c == ',' || c == ' ')));
+        Assert.assertEquals("split() of empty buffer", Arrays.asList(""), tokens(CharacterBuffer.with(4).chars().split(',')));
+        Assert.assertEquals("tokenize() of delimiters only", Arrays.asList(), tokens(CharacterBuffer.with(4).chars().append(" ,, ").tokenize(c -> c == ',' || c == ' ')));
+
+        Iterator<CharacterBuffer.View> reused = buffer.split(',').reuseView().iterator();
+        CharacterBuffer.View first = reused.next();
+        Assert.assertSame("reuseView()", first, reused.next());
+        Assert.assertEquals("reuseView() moves the view", "beta", first.toString());
+        Assert.assertEquals("view start", 6, first.start());
+        Assert.assertEquals("stream()", Arrays.asList("alpha,beta,,gamma", "delta,"), buffer.tokenize(Character::isWhitespace).stream().map(CharSequence::toString).collect(Collectors.toList()));
+        try {
+            Iterator<CharacterBuffer.View> tokens = buffer.split(";").iterator();
+            tokens.next();
+            tokens.next();
+            Assert.fail("next() after the last token");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
     @Test
     public void testSubSequence() throws IOException {
         Objects objects = new Objects();
@@ -638,4 +1581,218 @@ public class CharacterBufferTest {
         objects.fill(CHARACTER_COUNT);
         objects.checkToString();
     }
+
+    @Test
+    public void testStats() throws Exception {
+        CharacterBufferStats stats = new CharacterBufferStats();
+        CharacterBuffer a = CharacterBuffer.with(4).stats(stats).chars();
+        CharacterBuffer b = CharacterBuffer.with(4).stats(stats).chars();
+        Assert.assertEquals("pageAllocations after creation", 2, stats.getPageAllocations());
+
+        a.append("0123456789");
+        Assert.assertEquals("pageAllocations after append", 4, stats.getPageAllocations());
+        Assert.assertEquals("directoryGrowths after append", 2, stats.getDirectoryGrowths());
+        Assert.assertEquals("directoryCopiedSlots after append", 3, stats.getDirectoryCopiedSlots());
+
+        a.insert(2, "xy");
+        Assert.assertEquals("insertMovedChars", 8, stats.getInsertMovedChars());
+        a.delete(0, 4);
+        Assert.assertEquals("deleteMovedChars", 8, stats.getDeleteMovedChars());
+        Assert.assertEquals("peakSize", 12, stats.getPeakSize());
+
+        b.append("abc");
+        b.toString();
+        b.toString();
+        Assert.assertEquals("toStringCacheHits", 1, stats.getToStringCacheHits());
+        Assert.assertEquals("toStringCacheMisses", 1, stats.getToStringCacheMisses());
+
+        ObjectName name = stats.register("testStats");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertEquals("JMX ToStringCacheHits", 1L, server.getAttribute(name, "ToStringCacheHits"));
+            server.invoke(name, "reset", null, null);
+            Assert.assertEquals("JMX PageAllocations after reset", 0L, server.getAttribute(name, "PageAllocations"));
+        } finally {
+            stats.unregister();
+        }
+        Assert.assertFalse("unregistered", ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    public void testToStringCachePolicy() throws IOException {
+        for (CharacterBuffer.CachePolicy policy : CharacterBuffer.CachePolicy.values()) {
+            CharacterBuffer actual = CharacterBuffer.with(4).toStringCache(policy).chars();
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                actual.append("line ").append(i).append('\n');
+                expected.append("line ").append(i).append('\n');
+                Assert.assertEquals("toString() after append with " + policy, expected.toString(), actual.toString());
+            }
+            Assert.assertEquals("toString() again with " + policy, expected.toString(), actual.toString());
+
+            actual.delete(3, 17).insert(5, "inserted");
+            expected.delete(3, 17).insert(5, "inserted");
+            Assert.assertEquals("toString() after delete and insert with " + policy, expected.toString(), actual.toString());
+
+            Assert.assertEquals("toStringCacheHits() with " + policy, policy == CharacterBuffer.CachePolicy.NONE ? 0 : 1, actual.toStringCacheHits());
+            Assert.assertEquals("toStringCacheMisses() with " + policy, policy == CharacterBuffer.CachePolicy.NONE ? 102 : 101, actual.toStringCacheMisses());
+        }
+
+        CharacterBuffer bounded = CharacterBuffer.with(4).toStringCache(CharacterBuffer.CachePolicy.STRONG, 10).chars().append("0123456789");
+        Assert.assertSame("toString() within the bound", bounded.toString(), bounded.toString());
+        bounded.append('!');
+        Assert.assertNotSame("toString() beyond the bound", bounded.toString(), bounded.toString());
+    }
+
+    @Test
+    public void testTransform() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 3 * 1024 * 1024; i++) {
+            text.append("Line ").append(i).append(": \u00c7a\u00e7\u00e3o \u00df \u0001 Mixed CASE\n");
+        }
+        CharacterBuffer[] buffers = { CharacterBuffer.with(16).kilo().chars(), CharacterBuffer.with(4).kilo().compress(2).chars() };
+        for (CharacterBuffer actual : buffers) {
+            actual.append(text);
+            char[] expected = text.toString().toCharArray();
+
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = Character.toUpperCase(expected[i]);
+            }
+            Assert.assertEquals("toUpperCase()", new String(expected), actual.toUpperCase().toString());
+
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = Character.toLowerCase(expected[i]);
+            }
+            Assert.assertEquals("toLowerCase()", new String(expected), actual.toLowerCase().toString());
+
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = Character.isISOControl(expected[i]) && expected[i] != '\n' ? '?' : expected[i];
+            }
+            Assert.assertEquals("transform(CharUnaryOperator)", new String(expected), actual.transform(c -> Character.isISOControl(c) && c != '\n' ? '?' : c).toString());
+        }
+        Assert.assertEquals("toUpperCase() of a short buffer", "HELLO WORLD", CharacterBuffer.with(4).chars().append("Hello World").toUpperCase().toString());
+    }
+
+    @Test
+    public void testWriteToChannel() throws IOException {
+        String text = "a\u00e9\u4e2d\ud83d\ude00b\ud83d\ude01\u00ff";
+        CharacterBuffer buffer = CharacterBuffer.with(4).chars();
+        for (int i = 0; i < 1000; i++) {
+            buffer.append(text);
+        }
+        for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16, StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII }) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            long written = buffer.writeTo(Channels.newChannel(bos), charset);
+            byte[] expected = buffer.toString().getBytes(charset);
+            Assert.assertEquals("writeTo(WritableByteChannel, " + charset + ") length", expected.length, written);
+            Assert.assertArrayEquals("writeTo(WritableByteChannel, " + charset + ")", expected, bos.toByteArray());
+        }
+    }
+
+    @Test
+    public void testWriteToOutputStream() throws IOException {
+        Objects objects = new Objects();
+        objects.fill(CHARACTER_COUNT);
+        objects.append("\u00e9\ud83d\ude00");
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        long written = objects.a.writeTo(bos, StandardCharsets.UTF_8);
+        byte[] expected = objects.c.toString().getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals("writeTo(OutputStream, Charset) length", expected.length, written);
+        Assert.assertArrayEquals("writeTo(OutputStream, Charset)", expected, bos.toByteArray());
+    }
+
+    private void checkColdPages(CharacterBuffer actual) throws Exception {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            String line = "2026-10-19 12:00:" + (i % 60) + " INFO [worker-" + (i % 7) + "] request " + i + " served \u00e9\u4e2d\n";
+            actual.append(line);
+            expected.append(line);
+        }
+        Assert.assertEquals("toString() of cold pages", expected.toString(), actual.toString());
+        for (int i = 0; i < expected.length(); i += 97) {
+            Assert.assertEquals("charAt(" + i + ") of cold pages", expected.charAt(i), actual.charAt(i));
+        }
+        Assert.assertEquals("indexOf(CharSequence) of cold pages", expected.indexOf("request 1999"), actual.indexOf("request 1999"));
+
+        actual.insert(100, "inserted");
+        expected.insert(100, "inserted");
+        actual.delete(500, 5000);
+        expected.delete(500, 5000);
+        actual.append("appended");
+        expected.append("appended");
+        Assert.assertEquals("insert/delete/append on cold pages", expected.toString(), actual.toString());
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        actual.writeTo(bos, StandardCharsets.UTF_8);
+        Assert.assertArrayEquals("writeTo(OutputStream, Charset) of cold pages", expected.toString().getBytes(StandardCharsets.UTF_8), bos.toByteArray());
+
+        CharacterBuffer deserialized = (CharacterBuffer) new ObjectInputStream(new ByteArrayInputStream(serialize(actual))).readObject();
+        Assert.assertEquals("serialization of cold pages", expected.toString(), deserialized.toString());
+    }
+
+    private void checkLineIndex(CharacterBuffer buffer, String text) {
+        String[] lines = text.split("\r\n|\r|\n", -1);
+        Assert.assertEquals("lineCount() of '" + text + "'", lines.length, buffer.lineCount());
+        int start = 0;
+        for (int line = 0; line < lines.length; line++) {
+            Assert.assertEquals("lineStart(" + line + ") of '" + text + "'", start, buffer.lineStart(line));
+            Assert.assertEquals("line(" + line + ") of '" + text + "'", lines[line], buffer.line(line).toString());
+            int end = start + lines[line].length();
+            if (text.startsWith("\r\n", end)) {
+                end += 2;
+            } else if (end < text.length()) {
+                end += 1;
+            }
+            for (int index = start; index < end; index++) {
+                Assert.assertEquals("lineOf(" + index + ") of '" + text + "'", line, buffer.lineOf(index));
+            }
+            start = end;
+        }
+        Assert.assertEquals("lineOf(length()) of '" + text + "'", lines.length - 1, buffer.lineOf(text.length()));
+    }
+
+    private byte[] serialize(Serializable object) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(object);
+        oos.close();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Counts the spill files in the temporary directory, and where the open file descriptors can be listed, the open ones that were already unlinked.
+     */
+    private int spillFiles() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(System.getProperty("java.io.tmpdir")), "CharacterBuffer*.spill")) {
+            for (Iterator<Path> iterator = files.iterator(); iterator.hasNext(); iterator.next()) {
+                count++;
+            }
+        }
+        Path descriptors = Paths.get("/proc/self/fd");
+        if (Files.isDirectory(descriptors)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(descriptors)) {
+                for (Path file : files) {
+                    try {
+                        String target = Files.readSymbolicLink(file).toString();
+                        if (target.contains("CharacterBuffer") && target.endsWith(".spill (deleted)")) {
+                            count++;
+                        }
+                    } catch (IOException e) {
+                        // the descriptor of the directory stream itself is already closed
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private List<String> tokens(CharacterBuffer.Splitter splitter) {
+        List<String> tokens = new ArrayList<String>();
+        for (CharSequence token : splitter) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
 }
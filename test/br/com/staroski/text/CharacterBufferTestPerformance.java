@@ -27,10 +27,22 @@ public class CharacterBufferTestPerformance {
 
     public void execute() throws Exception {
         testSerializationBytesLength();
+        testAdaptivePagesMemory();
+        testCompressedPagesMemory();
         testAppendCharPerformance();
         testAppendCharSequencePerformance();
     }
 
+    public void testAdaptivePagesMemory() throws Exception {
+        System.out.println("memory of adaptive pages {");
+        int buffers = 100000;
+        long adaptive = usedMemoryOfMessages(CharacterBuffer.with(16).kilo().adaptive(64), buffers);
+        System.out.printf("  %,d x CharacterBuffer 16K adaptive(64):   used: %,d bytes%n", buffers, adaptive);
+        long plain = usedMemoryOfMessages(CharacterBuffer.with(16).kilo(), buffers);
+        System.out.printf("  %,d x CharacterBuffer 16K:                used: %,d bytes    ratio: %.1fx%n", buffers, plain, plain / (double) Math.max(1, adaptive));
+        System.out.println("}");
+    }
+
     public void testAppendCharPerformance() throws IOException {
         System.out.println("performance of append(char) {");
 
@@ -89,15 +101,25 @@ public class CharacterBufferTestPerformance {
         System.out.println("}");
     }
 
+    public void testCompressedPagesMemory() throws Exception {
+        System.out.println("memory of compressed pages {");
+        int lines = 500000;
+        long plain = usedMemoryAfterLogging(CharacterBuffer.with(16).kilo().bytes(), lines);
+        System.out.printf("  CharacterBuffer 16K:               used: %,d bytes%n", plain);
+        long compressed = usedMemoryAfterLogging(CharacterBuffer.with(16).kilo().compress(4).bytes(), lines);
+        System.out.printf("  CharacterBuffer 16K compress(4):   used: %,d bytes    ratio: %.1fx%n", compressed, plain / (double) Math.max(1, compressed));
+        System.out.println("}");
+    }
+
     public void testSerializationBytesLength() throws Exception {
-        String text = "testing the serialization mechanism";
-        byte[] characterBuffer = serialize(CharacterBuffer.with(16).kilo().bytes());
-        byte[] stringBuilder = serialize(new StringBuilder(text));
-        byte[] stringBuffer = serialize(new StringBuffer(text));
-
-        System.err.println("Serialization size of CharacterBuffer: " + characterBuffer.length);
-        System.err.println("Serialization size of StringBuilder:   " + stringBuilder.length);
-        System.err.println("Serialization size of StringBuffer:    " + stringBuffer.length);
+        System.out.println("serialization size {");
+        String latin1 = "testing the serialization mechanism";
+        String utf16 = "testando o mecanismo de serializa\u00e7\u00e3o \u4e2d\u6587";
+        for (int repeat : new int[] { 1, 1000, 100000 }) {
+            printSerializationBytesLength("Latin-1", latin1, repeat);
+            printSerializationBytesLength("UTF-16 ", utf16, repeat);
+        }
+        System.out.println("}");
     }
 
     private <T extends Appendable & CharSequence> Report fillWithCharSequenceWhileHasMemory(T buffer) throws Exception {
@@ -134,6 +156,57 @@ public class CharacterBufferTestPerformance {
         }
     }
 
+    private void printSerializationBytesLength(String name, String text, int repeat) throws IOException {
+        CharacterBuffer characterBuffer = CharacterBuffer.with(16).kilo().bytes();
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < repeat; i++) {
+            characterBuffer.append(text);
+            stringBuilder.append(text);
+        }
+        StringBuffer stringBuffer = new StringBuffer(stringBuilder);
+        System.out.printf("  %s %,11d chars    CharacterBuffer: %,11d bytes    StringBuilder: %,11d bytes    StringBuffer: %,11d bytes%n",
+                          name,
+                          characterBuffer.length(),
+                          serialize(characterBuffer).length,
+                          serialize(stringBuilder).length,
+                          serialize(stringBuffer).length);
+    }
+
+    private long usedMemoryAfterLogging(CharacterBuffer buffer, int lines) throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        Thread.sleep(500);
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        for (int i = 0; i < lines; i++) {
+            buffer.append("2026-10-19 12:00:").append(i % 60).append(" INFO  [worker-").append(i % 16).append("] request ").append(i).append(" served in ").append(i % 250).append(" ms\n");
+        }
+        System.gc();
+        Thread.sleep(500);
+        long used = runtime.totalMemory() - runtime.freeMemory() - before;
+        if (buffer.length() == 0) {
+            throw new IllegalStateException(); // keeps the buffer reachable until here
+        }
+        return used;
+    }
+
+    private long usedMemoryOfMessages(CharacterBuffer.Amount amount, int buffers) throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        Thread.sleep(500);
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        CharacterBuffer[] messages = new CharacterBuffer[buffers];
+        for (int i = 0; i < buffers; i++) {
+            messages[i] = amount.bytes().append("message ").append(i).append(" of a short lived buffer");
+        }
+        System.gc();
+        Thread.sleep(500);
+        long used = runtime.totalMemory() - runtime.freeMemory() - before;
+        if (messages[buffers - 1].length() == 0) {
+            throw new IllegalStateException(); // keeps the buffers reachable until here
+        }
+        return used;
+    }
+
     private <T extends Serializable> byte[] serialize(T object) throws IOException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         ObjectOutputStream oos = new ObjectOutputStream(bos);